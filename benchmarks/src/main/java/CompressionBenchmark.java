@@ -0,0 +1,90 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * The CompressionBenchmark class measures what response compression costs and saves:
+ * the bytes put on the wire (body, chunk framing included) and the CPU time spent per response,
+ * for the Wordle page rendered on each request and for the script, compressed once at startup.
+ *
+ * Usage: java -cp benchmarks/target/benchmarks.jar CompressionBenchmark [iterations=20000]
+ */
+public class CompressionBenchmark {
+    private static final String NEW_GAME = "-1:secret:crane;0:::;1:::;2:::;3:::;4:::;5:::";
+    private static final String MID_GAME = "-1:secret:crane;0:slate:BBGBG;1:brace:BGGGG;2:::;3:::;4:::;5:::";
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+
+        // The board rendering logs to stdout: keep the output for the results
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(new OutputStream() { @Override public void write(int b) {} }));
+        HTML.preload();
+
+        String[] report = new String[2 * 3 + 3];
+        int line = 0;
+        for (int warmup = 0; warmup < 2; warmup++) {
+            line = 0;
+            for (ResponseCompressor.Encoding encoding : ResponseCompressor.Encoding.values()) {
+                report[line++] = run("page, new game", NEW_GAME, encoding, iterations);
+                report[line++] = run("page, mid game", MID_GAME, encoding, iterations);
+                report[line++] = runStatic("app.js (precompressed)", HTML.getScript(), encoding, iterations);
+            }
+        }
+
+        System.setOut(console);
+        System.out.printf("%-24s %-9s %10s %12s%n", "response", "encoding", "bytes", "CPU us/op");
+        for (int i = 0; i < line; i++) System.out.println(report[i]);
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    /**
+     * Renders, compresses and chunks the page as HttpHandler does.
+     */
+    private static String run(String name, String gameState, ResponseCompressor.Encoding encoding, int iterations) {
+        ResponseBuffer out = new ResponseBuffer();
+        HTML html = new HTML();
+        int bytes = 0;
+
+        long start = cpuTime();
+        for (int i = 0; i < iterations; i++) {
+            out.clear();
+            html.writeWordlePage(out, gameState, "");
+            if (encoding != ResponseCompressor.Encoding.IDENTITY) ResponseCompressor.compress(out, 0, encoding);
+            out.chunk(0, WordleServer.getMaxChunckSize());
+            bytes = out.length();
+            sink += bytes;
+        }
+        return format(name, encoding, bytes, cpuTime() - start, iterations);
+    }
+
+    /**
+     * Picks the precompressed representation of an asset, as HttpHandler does.
+     */
+    private static String runStatic(String name, StaticAsset asset, ResponseCompressor.Encoding encoding, int iterations) {
+        ResponseBuffer out = new ResponseBuffer();
+        int bytes = 0;
+
+        long start = cpuTime();
+        for (int i = 0; i < iterations; i++) {
+            out.clear();
+            ResponseCompressor.Encoding chosen = asset.negotiate(encoding == ResponseCompressor.Encoding.GZIP, encoding == ResponseCompressor.Encoding.DEFLATE);
+            out.add(asset.getContent(chosen));
+            bytes = out.length();
+            sink += bytes;
+        }
+        return format(name, encoding, bytes, cpuTime() - start, iterations);
+    }
+
+    private static String format(String name, ResponseCompressor.Encoding encoding, int bytes, long cpuNanos, int iterations) {
+        return String.format("%-24s %-9s %10d %12.2f", name, encoding.getToken(), bytes, cpuNanos / 1000.0 / iterations);
+    }
+
+    private static long cpuTime() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return threads.getCurrentThreadCpuTime();
+    }
+}
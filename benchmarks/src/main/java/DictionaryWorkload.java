@@ -0,0 +1,37 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import be.uliege.wordle.benchmarks.DictionaryBenchmarks;
+
+/**
+ * The DictionaryWorkload class uses the dictionary as the request path does (see WordDictionary):
+ * checking guesses, from Strings or straight from the bytes of a request, every other one
+ * most likely not a word, and drawing the secret words of new sessions.
+ */
+public class DictionaryWorkload implements DictionaryBenchmarks.Workload {
+    private static final int WORDS = 1024;
+
+    private final String[] words = new String[WORDS];
+    private final byte[] bytes = new byte[WORDS * PackedWord.LETTERS]; // Upper case, as in the request URI
+    private int next = 0;
+
+    public DictionaryWorkload() {
+        int[] dictionary = WordDictionary.getWords();
+        Random random = new Random(42);
+        for (int i = 0; i < WORDS; i++) {
+            String word = PackedWord.decode(dictionary[random.nextInt(dictionary.length)]);
+            if (i % 2 == 1) word = word.substring(0, PackedWord.LETTERS - 1) + (char) ('a' + random.nextInt(26));
+            words[i] = word;
+            System.arraycopy(word.toUpperCase().getBytes(StandardCharsets.US_ASCII), 0, bytes, i * PackedWord.LETTERS, PackedWord.LETTERS);
+        }
+    }
+
+    @Override
+    public boolean isGuessValid() { return WordDictionary.contains(words[next++ & (WORDS - 1)]); }
+
+    @Override
+    public boolean isGuessValidFromBytes() { return WordDictionary.contains(PackedWord.encode(bytes, (next++ & (WORDS - 1)) * PackedWord.LETTERS)); }
+
+    @Override
+    public String generateSecretWord() { return WordDictionary.randomSecret(); }
+}
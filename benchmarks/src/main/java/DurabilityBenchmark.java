@@ -0,0 +1,81 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The DurabilityBenchmark class measures what the write-ahead log costs: the guesses per second
+ * applied to the session table by concurrent request threads, in memory only, and in durable mode
+ * where every guess waits for its record to be synced to disk, for several flush intervals.
+ * The number of fsyncs shows how many guesses each group commit carries.
+ *
+ * Usage: java -cp benchmarks/target/benchmarks.jar DurabilityBenchmark [threads=1,16,64] [seconds=3] [flushIntervals=0,2,10] [dir=temp dir]
+ */
+public class DurabilityBenchmark {
+    private static final String[] GUESSES = { "slate", "crane", "brick", "pound", "fizzy", "mummy" };
+    private static final String[] COLOURS = { "BBGBG", "GBBYB", "BBBBY", "YBGBB", "BBBBB", "GGGGG" };
+
+    public static void main(String[] args) throws Exception {
+        String[] threadCounts = (args.length > 0 ? args[0] : "1,16,64").split(",");
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        String[] flushIntervals = (args.length > 2 ? args[2] : "0,2,10").split(",");
+        Path dir = args.length > 3 ? Paths.get(args[3]) : Files.createTempDirectory("wordle-wal");
+
+        System.out.printf("%-20s %8s %14s %10s %14s%n", "mode", "threads", "guesses/s", "fsyncs", "guesses/fsync");
+        for (String threads : threadCounts) {
+            int n = Integer.parseInt(threads);
+            run("memory", n, seconds, null);
+            for (String interval : flushIntervals) {
+                Path file = dir.resolve("bench.wal");
+                Files.deleteIfExists(file);
+                WriteAheadLog log = new WriteAheadLog(file, Long.parseLong(interval));
+                log.replay(new HeapSessionStore(1));
+                run("durable, " + interval + " ms", n, seconds, log);
+                log.close();
+                Files.deleteIfExists(file);
+            }
+        }
+        if (args.length <= 3) Files.deleteIfExists(dir);
+    }
+
+    /**
+     * Plays guesses from concurrent threads, each on its own sessions, for a fixed time.
+     */
+    private static void run(String mode, int threads, int seconds, WriteAheadLog log) throws InterruptedException {
+        SessionStore store = new HeapSessionStore(threads * 16);
+        AtomicLong guesses = new AtomicLong();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long syncsBefore = log == null ? 0 : log.getSyncCount();
+        CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            Thread thread = new Thread(() -> {
+                UUID[] ids = new UUID[16];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = UUID.randomUUID();
+                    store.put(ids[i].toString(), new SessionData("crane"));
+                }
+                long count = 0;
+                while (System.nanoTime() < deadline) {
+                    UUID id = ids[(int) (count % ids.length)];
+                    SessionData session = store.get(id.toString());
+                    if (session.getAttempt() >= SessionData.ROWS) session.resetAttempts();
+                    int move = session.getAttempt();
+                    session.addGameState(GUESSES[move], COLOURS[move]);
+                    if (log != null) log.await(log.append(id.getMostSignificantBits(), id.getLeastSignificantBits(), session));
+                    count++;
+                }
+                guesses.addAndGet(count);
+                done.countDown();
+            });
+            thread.start();
+        }
+        done.await();
+
+        long syncs = log == null ? 0 : log.getSyncCount() - syncsBefore;
+        double perFsync = syncs == 0 ? 0 : (double) guesses.get() / syncs;
+        System.out.printf("%-20s %8d %14.0f %10d %14.1f%n", mode, threads, guesses.get() / (double) seconds, syncs, perFsync);
+    }
+}
@@ -0,0 +1,134 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The ExecutionModeBenchmark class compares the fixed thread pool with the
+ * virtual-thread-per-connection mode of the blocking server.
+ *
+ * Each run opens N concurrent client connections that stay silent for a think time
+ * (slow clients), then all send a guess request. It reports throughput, latency
+ * percentiles and the peak number of live platform threads.
+ *
+ * Usage: java -cp benchmarks/target/benchmarks.jar ExecutionModeBenchmark [clients=1000,10000] [poolSize=200] [thinkMs=200]
+ */
+public class ExecutionModeBenchmark {
+    private static final byte[] REQUEST = ("GET /play.html/guess?word=CRANE HTTP/1.1\r\n" +
+                                           "Host: localhost\r\n" +
+                                           "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII); // Framed by the end of the connection
+
+    public static void main(String[] args) throws Exception {
+        int[] clientCounts = Arrays.stream((args.length > 0 ? args[0] : "1000,10000").split(","))
+                                   .mapToInt(Integer::parseInt).toArray();
+        int poolSize = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int thinkMs = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        // The handlers log every response, keep that out of the measurements
+        PrintStream console = System.out;
+        PrintStream silent = new PrintStream(new OutputStream() { @Override public void write(int b) {} });
+        System.setOut(silent);
+        System.setErr(silent);
+
+        console.printf("%-8s %8s %10s %10s %10s %10s %10s%n", "mode", "clients", "req/s", "p50 ms", "p99 ms", "max ms", "threads");
+        for (int clients : clientCounts) {
+            for (String mode : new String[] { "pool", "virtual" }) {
+                // The pool is sized by poolSize, virtual threads may serve every client at once
+                int limit = mode.equals("pool") ? poolSize : clients;
+                console.println(run(mode, limit, clients, thinkMs));
+            }
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Runs one benchmark configuration against an in-process server on an ephemeral port.
+     *
+     * @return the formatted result line
+     */
+    private static String run(String mode, int limit, int clients, int thinkMs) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        System.gc();
+        threads.resetPeakThreadCount();
+
+        ServerSocket serverSocket = WordleServer.openServerSocket(0, clients);
+        Executor executor = WordleServer.createExecutor(mode, limit);
+        Thread acceptor = new Thread(() -> WordleServer.serve(serverSocket, executor), "acceptor");
+        acceptor.start();
+
+        InetSocketAddress address = new InetSocketAddress("localhost", serverSocket.getLocalPort());
+        Selector selector = Selector.open();
+        SocketChannel[] channels = new SocketChannel[clients];
+        long[] sentAt = new long[clients];
+        long[] latencies = new long[clients];
+
+        // Open every connection first, then let them sit idle like slow clients
+        for (int i = 0; i < clients; i++) {
+            channels[i] = SocketChannel.open(address);
+            channels[i].configureBlocking(false);
+        }
+        Thread.sleep(thinkMs);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            sentAt[i] = System.nanoTime();
+            channels[i].write(ByteBuffer.wrap(REQUEST));
+            channels[i].register(selector, SelectionKey.OP_READ, i);
+        }
+
+        // A response is complete when the server closes the connection, as the request asks
+        ByteBuffer sink = ByteBuffer.allocateDirect(64 * 1024);
+        int done = 0;
+        while (done < clients) {
+            if (selector.select(10_000) == 0) break;
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                sink.clear();
+                int read;
+                try { read = ((SocketChannel) key.channel()).read(sink); }
+                catch (IOException e) { read = -1; }
+                if (read == -1) {
+                    int i = (Integer) key.attachment();
+                    latencies[i] = System.nanoTime() - sentAt[i];
+                    key.cancel();
+                    key.channel().close();
+                    done++;
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        int peakThreads = threads.getPeakThreadCount();
+
+        serverSocket.close();
+        acceptor.join();
+        if (executor instanceof ExecutorService) ((ExecutorService) executor).shutdownNow();
+        for (SocketChannel channel : channels) channel.close();
+        selector.close();
+
+        long[] completed = Arrays.stream(latencies).filter(l -> l > 0).sorted().toArray();
+        return String.format("%-8s %8d %10.0f %10.1f %10.1f %10.1f %10d%s",
+                mode, clients, done / (elapsed / 1e9),
+                percentile(completed, 0.50), percentile(completed, 0.99), percentile(completed, 1.0),
+                peakThreads, done < clients ? "  (" + (clients - done) + " timed out)" : "");
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return Double.NaN;
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
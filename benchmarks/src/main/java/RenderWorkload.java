@@ -0,0 +1,37 @@
+import be.uliege.wordle.benchmarks.RenderBenchmarks;
+
+/**
+ * The RenderWorkload class renders a game in progress: its game state, the Wordle page
+ * written into a response buffer, and the same page framed in chunks.
+ */
+public class RenderWorkload implements RenderBenchmarks.Workload {
+    private final SessionData session = new SessionData("crane");
+    private final HTML html = new HTML();
+    private final ResponseBuffer out = new ResponseBuffer();
+    private final String gameState;
+
+    public RenderWorkload() {
+        session.addGameState("slate", "BBGBG");
+        session.addGameState("brace", "BYGYG");
+        gameState = session.getFullGameState();
+        HTML.preload();
+    }
+
+    @Override
+    public String fullGameState() { return session.getFullGameState(); }
+
+    @Override
+    public int wordlePage() {
+        out.clear();
+        html.writeWordlePage(out, gameState, "");
+        return out.length();
+    }
+
+    @Override
+    public int wordlePageChunked() {
+        out.clear();
+        html.writeWordlePage(out, gameState, "");
+        out.chunk(0, WordleServer.getMaxChunckSize());
+        return out.length();
+    }
+}
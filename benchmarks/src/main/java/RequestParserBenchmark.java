@@ -0,0 +1,101 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The RequestParserBenchmark class compares HttpRequestParser with the previous parsing path
+ * of HttpHandler (BufferedReader over an InputStreamReader, regular expressions on the request
+ * line and on each header, split into a HashMap) on a typical AJAX guess request.
+ * It reports the time and the bytes allocated per parsed request.
+ *
+ * Usage: java -cp benchmarks/target/benchmarks.jar RequestParserBenchmark [iterations=2000000]
+ */
+public class RequestParserBenchmark {
+    private static final byte[] REQUEST = ("GET /play.html/guess?word=CRANE HTTP/1.1\r\n" +
+            "Host: localhost:8008\r\n" +
+            "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:120.0) Gecko/20100101 Firefox/120.0\r\n" +
+            "Accept: */*\r\n" +
+            "Accept-Language: en-US,en;q=0.5\r\n" +
+            "Accept-Encoding: gzip, deflate, br\r\n" +
+            "JS-Enabled: true\r\n" +
+            "Row: 2\r\n" +
+            "Connection: keep-alive\r\n" +
+            "Cookie: SESSID=0f8fad5b-d9cb-469f-a165-70867728950e\r\n" +
+            "\r\n").getBytes(StandardCharsets.US_ASCII);
+
+    private static long sink;
+
+    public static void main(String[] args) throws IOException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        HttpRequestParser parser = new HttpRequestParser();
+
+        // Warm up both paths so that both are compiled before being measured
+        for (int i = 0; i < 3; i++) {
+            runLegacy(iterations / 10);
+            runParser(parser, iterations / 10);
+        }
+
+        report("legacy (reader + regex + HashMap)", iterations, () -> runLegacy(iterations));
+        report("HttpRequestParser", iterations, () -> runParser(parser, iterations));
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    private interface Run { void run() throws IOException; }
+
+    private static void report(String name, int iterations, Run run) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        run.run();
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+
+        System.out.printf("%-36s %8.1f ns/op %10.1f B/op%n", name, (double) elapsed / iterations, (double) allocated / iterations);
+    }
+
+    private static void runParser(HttpRequestParser parser, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            parser.reset();
+            int end = parser.parse(REQUEST, 0, REQUEST.length);
+            sink += end + parser.getRoute().ordinal() + parser.getRow() + (parser.isSessionIdValid() ? 1 : 0);
+        }
+    }
+
+    private static void runLegacy(int iterations) throws IOException {
+        for (int i = 0; i < iterations; i++) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(REQUEST)));
+            sink += legacyParse(reader);
+        }
+    }
+
+    /**
+     * The parsing done by HttpHandler before HttpRequestParser, kept here as the baseline.
+     */
+    private static int legacyParse(BufferedReader reader) throws IOException {
+        String requestLine = reader.readLine();
+        if (requestLine == null || !requestLine.matches("^[A-Z]+ .* HTTP/1\\.1$")) return -1;
+        String[] request = requestLine.split(" ", 3);
+        String uri = request[1];
+
+        Map<String, String> headers = new HashMap<String, String>();
+        String line;
+        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+            if (!line.matches("^[^:]+: .*$")) return -1;
+            String[] header = line.split(": ", 2);
+            headers.put(header[0], header[1]);
+        }
+
+        int result = 0;
+        if (uri.matches("^/play\\.html/guess\\?word=[A-Z]{5}$")) result += uri.split("=")[1].toLowerCase().length();
+        if (headers.containsKey("Row")) result += Integer.parseInt(headers.get("Row"));
+        if (headers.containsKey("Cookie") && headers.get("Cookie").split("=", 2)[1].matches("^[0-9a-f\\-]+$")) result++;
+        return result;
+    }
+}
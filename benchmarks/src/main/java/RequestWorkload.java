@@ -0,0 +1,55 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import be.uliege.wordle.benchmarks.RequestBenchmarks;
+
+/**
+ * The RequestWorkload class runs the request path without sockets: parsing the head of a typical
+ * AJAX guess request, and handling a page reload of a game in progress from its bytes to its
+ * response in the buffer (checks of the request line and headers, session lookup, page).
+ */
+public class RequestWorkload implements RequestBenchmarks.Workload {
+    private static final byte[] GUESS = ("GET /play.html/guess?word=CRANE HTTP/1.1\r\n" +
+            "Host: localhost:8008\r\n" +
+            "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:120.0) Gecko/20100101 Firefox/120.0\r\n" +
+            "Accept: */*\r\n" +
+            "Accept-Language: en-US,en;q=0.5\r\n" +
+            "Accept-Encoding: gzip, deflate, br\r\n" +
+            "JS-Enabled: true\r\n" +
+            "Row: 2\r\n" +
+            "Connection: keep-alive\r\n" +
+            "Cookie: SESSID=0f8fad5b-d9cb-469f-a165-70867728950e\r\n" +
+            "\r\n").getBytes(StandardCharsets.US_ASCII);
+
+    private final HttpRequestParser parser = new HttpRequestParser();
+    private final HttpHandler handler = new HttpHandler(WordleServer.getServerID());
+    private final ByteArrayInputStream reload;
+
+    public RequestWorkload() {
+        String id = UUID.randomUUID().toString();
+        SessionData session = new SessionData("crane");
+        session.addGameState("slate", "BBGBG");
+        WordleServer.addSession(id, session);
+
+        // No Accept-Encoding: the page is sent as it is rendered
+        reload = new ByteArrayInputStream(("GET /play.html HTTP/1.1\r\nHost: localhost:8008\r\nCookie: SESSID=" + id + "\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public int parseRequest() {
+        parser.reset();
+        return parser.parse(GUESS, 0, GUESS.length);
+    }
+
+    @Override
+    public int handlePageReload() throws IOException {
+        reload.reset();
+        handler.handle(reload);
+        int length = handler.getResponse().length();
+        handler.getResponse().clear();
+        return length;
+    }
+}
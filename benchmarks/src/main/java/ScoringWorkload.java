@@ -0,0 +1,49 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import be.uliege.wordle.benchmarks.ScoringBenchmarks;
+
+/**
+ * The ScoringWorkload class scores guesses (see FeedbackScorer): one guess against its secret,
+ * as on each request, and the fork/join batch of many guesses against many secrets.
+ */
+public class ScoringWorkload implements ScoringBenchmarks.Workload {
+    private static final int PAIRS = 1024;
+
+    private final int[] secrets = new int[PAIRS];
+    private final int[] guesses = new int[PAIRS];
+    private int next = 0;
+    private final int[] batchGuesses, batchSecrets;
+    private final byte[] feedbacks;
+
+    public ScoringWorkload() {
+        int[] words = WordDictionary.getWords();
+        Random random = new Random(42);
+        for (int i = 0; i < PAIRS; i++) {
+            secrets[i] = words[random.nextInt(words.length)];
+            guesses[i] = words[random.nextInt(words.length)];
+        }
+        batchGuesses = Arrays.copyOf(words, ScoringBenchmarks.BATCH_GUESSES);
+        batchSecrets = Arrays.copyOfRange(words, words.length - ScoringBenchmarks.BATCH_SECRETS, words.length);
+        feedbacks = new byte[batchGuesses.length * batchSecrets.length];
+    }
+
+    @Override
+    public int score() {
+        int i = next++ & (PAIRS - 1);
+        return FeedbackScorer.compute(secrets[i], guesses[i]);
+    }
+
+    @Override
+    public String scoreToPattern() {
+        int i = next++ & (PAIRS - 1);
+        return FeedbackScorer.toPattern(FeedbackScorer.compute(secrets[i], guesses[i]));
+    }
+
+    @Override
+    public byte[] scoreAll() {
+        FeedbackScorer.scoreAll(batchGuesses, batchSecrets, feedbacks, ForkJoinPool.commonPool());
+        return feedbacks;
+    }
+}
@@ -0,0 +1,127 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The SessionStoreCheck class plays the same games against the heap and the off-heap session
+ * stores, and checks that both answer alike. The store is chosen when WordleServer is loaded, so
+ * each store is played in a JVM of its own, with "crane" as the only secret word. Two games guess
+ * "slate", "brace" and "crane" through HttpHandler, without sockets: the first guess of one comes
+ * with a cookie the server does not know, that of the other with no cookie, so that the request
+ * creating the session also plays on it.
+ * The exit status is 1 if a guess is refused, a game is not won, or the stores answer differently.
+ *
+ * Usage: java -cp benchmarks/target/benchmarks.jar SessionStoreCheck
+ */
+public class SessionStoreCheck {
+    private static final String[] STORES = { "heap", "offheap" };
+    private static final String[] GUESSES = { "slate", "brace", "crane" };
+    private static final String UNKNOWN_ID = "0f8fad5b-d9cb-469f-a165-70867728950e";
+    private static final Pattern STATUS = Pattern.compile("\\{\"Status\": \"[A-Za-z]+\", \"Message\":\"[^\"]*\"\\}");
+    private static final Pattern COOKIE = Pattern.compile("SESSID=([0-9a-f-]{36})");
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("play")) {
+            play();
+            System.exit(0);
+        }
+
+        Path secrets = Files.createTempFile("secrets", ".txt");
+        try {
+            Files.write(secrets, Collections.singletonList("crane"), StandardCharsets.UTF_8);
+            List<List<String>> transcripts = new ArrayList<>();
+            for (String store : STORES) {
+                List<String> transcript = run(store, secrets);
+                transcripts.add(transcript);
+                System.out.println("-- " + store);
+                for (String line : transcript) System.out.println(line);
+            }
+
+            boolean ok = true;
+            for (List<String> transcript : transcripts) {
+                if (transcript.stream().anyMatch(line -> line.contains("HTTP/1.1") && !line.contains(" 200 ")) ||
+                        transcript.stream().filter(line -> line.contains("\"Win\"")).count() != 2) ok = false;
+            }
+            for (List<String> transcript : transcripts) if (!transcript.equals(transcripts.get(0))) ok = false;
+            System.out.println(ok ? "Both stores played alike" : "FAILED");
+            System.exit(ok ? 0 : 1);
+        }
+        finally {
+            Files.deleteIfExists(secrets);
+        }
+    }
+
+    /**
+     * Plays the games in a new JVM, on a store.
+     *
+     * @return the lines printed by the games
+     */
+    private static List<String> run(String store, Path secrets) throws Exception {
+        List<String> command = new ArrayList<>(Arrays.asList(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(), "-cp", System.getProperty("java.class.path"),
+                "-Dwordle.sessionStore=" + store, "-Dwordle.secretWords=" + secrets, "-Dwordle.snapshotFile=",
+                "-Dwordle.logLevel=warn", SessionStoreCheck.class.getName(), "play"));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            // Startup messages and log records are not part of the games
+            for (String line; (line = reader.readLine()) != null; ) if (!line.startsWith("--") && !line.startsWith("{")) lines.add(line);
+        }
+        if (process.waitFor() != 0) lines.add("exited with " + process.exitValue());
+        return lines;
+    }
+
+
+    // GAMES ------------------------------------------------------------
+    private static void play() throws IOException {
+        HttpHandler handler = new HttpHandler(WordleServer.getServerID());
+        System.out.println("unknown cookie:");
+        guess(handler, UNKNOWN_ID);
+        System.out.println("no cookie:");
+        guess(handler, null);
+    }
+
+    /**
+     * Guesses the words in turn, then prints the game as stored.
+     *
+     * @param id the session ID sent with the first guess, null to send no cookie and take the one given
+     */
+    private static void guess(HttpHandler handler, String id) throws IOException {
+        for (int row = 0; row < GUESSES.length; row++) {
+            String response = exchange(handler, "GET /play.html/guess?word=" + GUESSES[row].toUpperCase() + " HTTP/1.1\r\n" +
+                    "Host: localhost\r\nJS-Enabled: true\r\nRow: " + row + "\r\nX-Requested-With: XMLHttpRequest\r\n" +
+                    (id == null ? "" : "Cookie: SESSID=" + id + "\r\n") + "\r\n");
+            Matcher status = STATUS.matcher(response);
+            System.out.println("  " + GUESSES[row] + ": " + statusLine(response) + (status.find() ? " " + status.group() : ""));
+            Matcher cookie = COOKIE.matcher(response);
+            if (id == null && cookie.find()) id = cookie.group(1);
+        }
+        SessionData session = id == null ? null : WordleServer.getSessionData(id);
+        System.out.println("  stored: " + (session == null ? "none" : session.getStatus() + ", attempt " + session.getAttempt() + ", " + session.getFullGameState()));
+    }
+
+    private static String exchange(HttpHandler handler, String request) throws IOException {
+        InputStream input = new ByteArrayInputStream(request.getBytes(StandardCharsets.US_ASCII));
+        handler.handle(input);
+        String response = handler.getResponse().toString();
+        handler.getResponse().clear();
+        return response;
+    }
+
+    private static String statusLine(String response) {
+        int end = response.indexOf("\r\n");
+        return end == -1 ? response : response.substring(0, end);
+    }
+}
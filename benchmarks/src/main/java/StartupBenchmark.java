@@ -0,0 +1,96 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The StartupBenchmark class measures the time to first request of the server: from the launch
+ * of a new JVM running WordleServer to the first complete answer to a new game, which also creates
+ * a session and thus draws a secret word. The dictionary is loaded from the binary word file
+ * (see WordListCompiler), then from WordleWordSet.
+ *
+ * The server is started with the classpath of the benchmark, from the current directory, and
+ * without a snapshot file. Port WordleServer.getPort() must be free.
+ *
+ * Usage: java -cp benchmarks/target/benchmarks.jar StartupBenchmark [runs=10] [wordsFile=words.bin]
+ */
+public class StartupBenchmark {
+    private static final byte[] REQUEST = ("GET /play.html HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n")
+            .getBytes(StandardCharsets.US_ASCII);
+    private static final File NULL_FILE = new File(System.getProperty("os.name").startsWith("Windows") ? "NUL" : "/dev/null");
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        String wordsFile = args.length > 1 ? args[1] : "words.bin";
+
+        System.out.printf("%-24s %10s %10s %10s%n", "dictionary", "min ms", "median ms", "max ms");
+        report(wordsFile, runs, wordsFile);
+        report("WordleWordSet", runs, "");
+    }
+
+    private static void report(String name, int runs, String wordsFile) throws Exception {
+        long[] millis = new long[runs];
+        for (int i = 0; i < runs; i++) millis[i] = timeToFirstRequest(wordsFile);
+        Arrays.sort(millis);
+        System.out.printf("%-24s %10d %10d %10d%n", name, millis[0], millis[runs / 2], millis[runs - 1]);
+    }
+
+    /**
+     * Starts a server and polls it until it answers a first request.
+     *
+     * @param wordsFile the binary word file, or an empty String for WordleWordSet
+     * @return the time from the launch to the end of the first response, in milliseconds
+     */
+    private static long timeToFirstRequest(String wordsFile) throws Exception {
+        List<String> command = new ArrayList<>(Arrays.asList(
+                javaBinary(), "-cp", System.getProperty("java.class.path"),
+                "-Dwordle.snapshotFile=", "-Dwordle.wordsFile=" + wordsFile, "WordleServer", "4"));
+        long start = System.nanoTime();
+        Process server = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.appendTo(NULL_FILE)).start();
+        try {
+            while (true) {
+                if (!server.isAlive()) throw new IllegalStateException("The server exited with " + server.exitValue());
+                if (answers()) return (System.nanoTime() - start) / 1_000_000;
+                Thread.sleep(1);
+            }
+        }
+        finally {
+            server.destroy();
+            server.waitFor();
+        }
+    }
+
+    /**
+     * Sends the request and reads the response up to the end of the stream.
+     *
+     * @return true if a response came back, false if the server is not listening yet
+     */
+    private static boolean answers() {
+        try (Socket socket = new Socket("localhost", WordleServer.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(REQUEST);
+            out.flush();
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[8192];
+            int total = 0;
+            for (int n; (n = in.read(buffer)) != -1; ) total += n;
+            return total > 0;
+        }
+        catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Locates the java launcher of the running JVM.
+     */
+    private static String javaBinary() {
+        return Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    }
+}
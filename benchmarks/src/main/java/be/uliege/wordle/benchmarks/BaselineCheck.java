@@ -0,0 +1,105 @@
+package be.uliege.wordle.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The BaselineCheck class compares the results of a run of the benchmarks with the baseline
+ * checked in next to them, both in the CSV format of JMH (-rf csv). Every benchmark is measured
+ * in average time, so a higher score is a slower one. JMH gives each score with its error, at 99.9%
+ * confidence: a benchmark regresses when even the lowest score within the error of the run exceeds
+ * the highest within the error of the baseline by more than the tolerance, so that a noisy run
+ * is not taken for a regression. The exit status is 1 if any benchmark regressed.
+ *
+ * Usage: java -cp benchmarks/target/benchmarks.jar be.uliege.wordle.benchmarks.BaselineCheck
+ *        results.csv [baseline.csv] [tolerance]
+ */
+public class BaselineCheck {
+    private static final String DEFAULT_BASELINE = "benchmarks/baseline.csv";
+    private static final String PACKAGE = BaselineCheck.class.getPackage().getName() + ".";
+    private static final int SCORE = 0, ERROR = 1; // In the values read from a CSV file
+    private static final double DEFAULT_TOLERANCE = 0.25; // Beyond the errors of both scores
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: BaselineCheck results.csv [baseline.csv] [tolerance]");
+            System.exit(2);
+        }
+        Map<String, double[]> results = read(args[0]);
+        Map<String, double[]> baseline = read(args.length > 1 ? args[1] : DEFAULT_BASELINE);
+        double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_TOLERANCE;
+
+        int regressions = 0;
+        for (Map.Entry<String, double[]> result : results.entrySet()) {
+            double[] after = result.getValue();
+            double[] before = baseline.get(result.getKey());
+            if (before == null) {
+                System.out.printf("%-44s %12.3f  (no baseline)%n", result.getKey(), after[SCORE]);
+                continue;
+            }
+            double change = after[SCORE] / before[SCORE] - 1;
+            double leastChange = (after[SCORE] - after[ERROR]) / (before[SCORE] + before[ERROR]) - 1;
+            boolean regressed = leastChange > tolerance;
+            if (regressed) regressions++;
+            System.out.printf("%-44s %12.3f %12.3f %+7.1f%% (at least %+7.1f%%)%s%n", result.getKey(), before[SCORE], after[SCORE],
+                    change * 100, leastChange * 100, regressed ? "  REGRESSION" : "");
+        }
+        System.out.println(regressions + " regression(s) beyond " + Math.round(tolerance * 100) + "%");
+        System.exit(regressions > 0 ? 1 : 0);
+    }
+
+
+    // HELPERS METHODS ------------------------------------------------------------
+    /**
+     * Reads the score and the error of each benchmark of a CSV file of JMH.
+     * An error JMH could not compute (a single sample) is read as 0.
+     *
+     * @return the score and the error, at SCORE and ERROR, by benchmark name, without the package,
+     *         with its parameters if any
+     */
+    private static Map<String, double[]> read(String file) throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+        Map<String, double[]> scores = new LinkedHashMap<>();
+        if (lines.isEmpty()) return scores;
+
+        List<String> header = split(lines.get(0));
+        int score = header.indexOf("Score");
+        int error = header.indexOf("Score Error (99.9%)");
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.trim().isEmpty()) continue;
+            List<String> fields = split(line);
+            StringBuilder name = new StringBuilder(fields.get(0).replace(PACKAGE, ""));
+            for (int i = header.indexOf("Unit") + 1; i < header.size(); i++) // Parameters, named "Param: ..."
+                name.append(' ').append(header.get(i).replace("Param: ", "")).append('=').append(fields.get(i));
+            double scoreError = error == -1 ? 0 : Double.parseDouble(fields.get(error));
+            scores.put(name.toString(), new double[] { Double.parseDouble(fields.get(score)), Double.isNaN(scoreError) ? 0 : scoreError });
+        }
+        return scores;
+    }
+
+    /**
+     * Splits a line of CSV on the commas outside quotes, and unquotes the fields.
+     */
+    private static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') quoted = !quoted;
+            else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            }
+            else field.append(c);
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
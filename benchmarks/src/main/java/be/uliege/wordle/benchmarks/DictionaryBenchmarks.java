@@ -0,0 +1,40 @@
+package be.uliege.wordle.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The DictionaryBenchmarks class measures the dictionary lookups and the draw of secret words
+ * (see DictionaryWorkload).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DictionaryBenchmarks {
+    public interface Workload {
+        boolean isGuessValid();
+        boolean isGuessValidFromBytes();
+        String generateSecretWord();
+    }
+
+    private Workload workload;
+
+    @Setup
+    public void setUp() { workload = Workloads.load("DictionaryWorkload", Workload.class); }
+
+    @Benchmark
+    public boolean isGuessValid() { return workload.isGuessValid(); }
+
+    @Benchmark
+    public boolean isGuessValidFromBytes() { return workload.isGuessValidFromBytes(); }
+
+    @Benchmark
+    public String generateSecretWord() { return workload.generateSecretWord(); }
+}
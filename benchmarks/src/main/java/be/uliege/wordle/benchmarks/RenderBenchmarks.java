@@ -0,0 +1,40 @@
+package be.uliege.wordle.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The RenderBenchmarks class measures the rendering of a game in progress (see RenderWorkload).
+ * The difference between the two pages is the chunked encoding.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RenderBenchmarks {
+    public interface Workload {
+        String fullGameState();
+        int wordlePage();
+        int wordlePageChunked();
+    }
+
+    private Workload workload;
+
+    @Setup
+    public void setUp() { workload = Workloads.load("RenderWorkload", Workload.class); }
+
+    @Benchmark
+    public String fullGameState() { return workload.fullGameState(); }
+
+    @Benchmark
+    public int wordlePage() { return workload.wordlePage(); }
+
+    @Benchmark
+    public int wordlePageChunked() { return workload.wordlePageChunked(); }
+}
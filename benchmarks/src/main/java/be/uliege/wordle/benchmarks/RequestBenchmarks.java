@@ -0,0 +1,36 @@
+package be.uliege.wordle.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The RequestBenchmarks class measures the request path without sockets (see RequestWorkload).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RequestBenchmarks {
+    public interface Workload {
+        int parseRequest();
+        int handlePageReload() throws IOException;
+    }
+
+    private Workload workload;
+
+    @Setup
+    public void setUp() { workload = Workloads.load("RequestWorkload", Workload.class); }
+
+    @Benchmark
+    public int parseRequest() { return workload.parseRequest(); }
+
+    @Benchmark
+    public int handlePageReload() throws IOException { return workload.handlePageReload(); }
+}
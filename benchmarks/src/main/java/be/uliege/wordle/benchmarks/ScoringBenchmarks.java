@@ -0,0 +1,44 @@
+package be.uliege.wordle.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The ScoringBenchmarks class measures the scoring of guesses (see ScoringWorkload). The batch
+ * is measured per feedback: 1e9 divided by its score is the number of feedbacks per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ScoringBenchmarks {
+    public static final int BATCH_GUESSES = 64, BATCH_SECRETS = 4096;
+
+    public interface Workload {
+        int score();
+        String scoreToPattern();
+        byte[] scoreAll();
+    }
+
+    private Workload workload;
+
+    @Setup
+    public void setUp() { workload = Workloads.load("ScoringWorkload", Workload.class); }
+
+    @Benchmark
+    public int score() { return workload.score(); }
+
+    @Benchmark
+    public String scoreToPattern() { return workload.scoreToPattern(); }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_GUESSES * BATCH_SECRETS)
+    public byte[] scoreAll() { return workload.scoreAll(); }
+}
@@ -0,0 +1,27 @@
+package be.uliege.wordle.benchmarks;
+
+/**
+ * The Workloads class loads the code run by the benchmarks. The server classes are in the default
+ * package, which no other package can name, and JMH refuses benchmarks in the default package:
+ * each benchmark calls a workload of the default package through an interface of its own, a call
+ * the JIT inlines since it only ever sees one implementation.
+ */
+final class Workloads {
+    private Workloads() {}
+
+    /**
+     * Creates a workload.
+     *
+     * @param name the class of the workload, in the default package
+     * @param type the interface it implements
+     * @return the workload
+     */
+    static <T> T load(String name, Class<T> type) {
+        try {
+            return type.cast(Class.forName(name).getDeclaredConstructor().newInstance());
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create the workload " + name, e);
+        }
+    }
+}
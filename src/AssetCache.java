@@ -0,0 +1,30 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * The AssetCache class holds the static assets of the application.
+ * They are read from disk once, when the class is initialized, and served from memory afterwards.
+ */
+public class AssetCache {
+    private static final String LOGO_PATH = "logo.png";
+    private static final StaticAsset LOGO = new StaticAsset("/logo.png", "image/png", readFile(LOGO_PATH));
+
+    // Getters
+    public static StaticAsset getLogo() { return LOGO; }
+
+    /**
+     * Reads a file as is. The logo is already a PNG: it is served without decoding the image.
+     *
+     * @param path the path of the file to read
+     * @return the content of the file, or an empty array if it cannot be read
+     */
+    private static byte[] readFile(String path) {
+        try { return Files.readAllBytes(Paths.get(path)); }
+        catch (IOException e) {
+            System.err.println("-- Could not read " + path);
+            e.printStackTrace();
+            return new byte[0];
+        }
+    }
+}
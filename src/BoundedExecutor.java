@@ -0,0 +1,57 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * The BoundedExecutor class limits the number of tasks running concurrently on another executor.
+ * It replaces the pool size when every connection gets its own (virtual) thread:
+ * tasks beyond the limit wait for a permit inside their own thread instead of in a pool queue.
+ *
+ * Tasks are connections, hence Closeable: a task interrupted while it waits for a permit
+ * is closed instead of run, so that its connection is not left open.
+ */
+public class BoundedExecutor implements Executor {
+    private final Executor delegate;
+    private final Semaphore permits;
+
+    public BoundedExecutor(Executor delegate, int maxConcurrency) {
+        if (maxConcurrency <= 0)
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+
+        this.delegate = delegate;
+        this.permits = new Semaphore(maxConcurrency);
+    }
+
+    /**
+     * Runs a task once a permit is available.
+     *
+     * @param task the task, which must also be Closeable
+     * @throws IllegalArgumentException if the task is not Closeable
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (!(task instanceof Closeable))
+            throw new IllegalArgumentException("Tasks must be Closeable, to be closed if they cannot run");
+
+        delegate.execute(() -> {
+            try { permits.acquire(); }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                try { ((Closeable) task).close(); }
+                catch (IOException closeError) { Log.error("Connection not closed", closeError); }
+                return;
+            }
+
+            try { task.run(); }
+            finally { permits.release(); }
+        });
+    }
+
+    /**
+     * Returns the number of tasks waiting for a permit.
+     *
+     * @return an estimate of the number of queued tasks
+     */
+    public int getQueueLength() { return permits.getQueueLength(); }
+}
@@ -0,0 +1,302 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The CandidateSet class is an immutable set of indices into the pool of secret words
+ * (WordDictionary.getSecretPool()): the secrets still consistent with the guesses of a game.
+ *
+ * It is a compressed bitmap in the manner of Roaring: the indices are grouped by their high 16 bits,
+ * and each group is a sorted array of its low 16 bits while it holds up to ARRAY_LIMIT of them,
+ * a bitmap of 8 KB beyond. Intersections work group by group, merging or probing.
+ *
+ * after() gives the candidates left by a guess. The pool is partitioned once per guess played
+ * again and again against many candidates (the openings, mostly): one set per feedback, kept in
+ * a bounded cache, so that the next games only intersect their candidates with the set of their
+ * feedback, or take it as it is on the first guess. Other guesses score each candidate.
+ */
+public class CandidateSet {
+    private static final int ARRAY_LIMIT = 4096; // Beyond, a bitmap is smaller than an array of chars
+    private static final int PARTITION_THRESHOLD = 1024; // Candidates from which a guess is worth a partition
+    private static final int MAX_PARTITIONS = 256; // About 30 KB each for the whole dictionary
+    private static final int PARTITION_SIGHTINGS = 4; // Times a guess is seen before it gets a partition
+    private static final byte[] SIGHTINGS = new byte[1 << 12]; // By hash of the guess, approximate
+    private static final ConcurrentHashMap<Integer, CandidateSet[]> PARTITIONS = new ConcurrentHashMap<>();
+
+    public static final CandidateSet EMPTY = new CandidateSet(new int[0], new Container[0]);
+    private static final CandidateSet ALL = range(WordDictionary.getSecretPoolSize());
+
+    private final int[] keys; // High 16 bits of the groups, increasing
+    private final Container[] containers;
+    private final int size;
+
+    private CandidateSet(int[] keys, Container[] containers) {
+        this.keys = keys;
+        this.containers = containers;
+        int size = 0;
+        for (Container container : containers) size += container.cardinality();
+        this.size = size;
+    }
+
+    /**
+     * Returns the set of the whole pool of secret words, before any guess.
+     */
+    public static CandidateSet all() { return ALL; }
+
+    /**
+     * Returns the candidates left by a guess.
+     *
+     * @param candidates the candidates before the guess
+     * @param guess      the packed guess
+     * @param feedback   its feedback (see FeedbackScorer)
+     * @return the candidates that would have given the same feedback
+     */
+    public static CandidateSet after(CandidateSet candidates, int guess, int feedback) {
+        CandidateSet[] partition = PARTITIONS.get(guess);
+        if (partition == null && candidates.size >= PARTITION_THRESHOLD && PARTITIONS.size() < MAX_PARTITIONS && isHot(guess))
+            partition = PARTITIONS.computeIfAbsent(guess, CandidateSet::partition);
+        if (partition != null) return candidates == ALL ? partition[feedback] : candidates.and(partition[feedback]);
+
+        int[] pool = WordDictionary.getSecretPool();
+        int[] indices = candidates.toArray();
+        int count = 0;
+        for (int index : indices)
+            if (FeedbackScorer.compute(pool[index], guess) == feedback) indices[count++] = index;
+        return of(indices, count);
+    }
+
+    /**
+     * Creates a set from sorted indices.
+     *
+     * @param sorted the indices, increasing and not negative
+     * @param count  the number of indices to take from the array
+     * @return the set
+     */
+    public static CandidateSet of(int[] sorted, int count) {
+        int groups = 0;
+        for (int i = 0; i < count; i++)
+            if (i == 0 || sorted[i] >>> 16 != sorted[i - 1] >>> 16) groups++;
+
+        int[] keys = new int[groups];
+        Container[] containers = new Container[groups];
+        int group = 0;
+        for (int from = 0, to; from < count; from = to) {
+            int key = sorted[from] >>> 16;
+            for (to = from + 1; to < count && sorted[to] >>> 16 == key; ) to++;
+            keys[group] = key;
+            containers[group++] = to - from <= ARRAY_LIMIT ? ArrayContainer.of(sorted, from, to) : BitmapContainer.of(sorted, from, to);
+        }
+        return new CandidateSet(keys, containers);
+    }
+
+    /**
+     * Creates the set of the indices from 0 to n excluded.
+     */
+    public static CandidateSet range(int n) {
+        int[] indices = new int[n];
+        for (int i = 0; i < n; i++) indices[i] = i;
+        return of(indices, n);
+    }
+
+    // Getters
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    /**
+     * Checks that an index is in the set.
+     */
+    public boolean contains(int index) {
+        int group = Arrays.binarySearch(keys, index >>> 16);
+        return group >= 0 && containers[group].contains(index & 0xFFFF);
+    }
+
+    /**
+     * Returns the indices of the set, increasing.
+     */
+    public int[] toArray() {
+        int[] indices = new int[size];
+        int at = 0;
+        for (int group = 0; group < keys.length; group++) at = containers[group].copyTo(keys[group] << 16, indices, at);
+        return indices;
+    }
+
+    /**
+     * Intersects two sets.
+     *
+     * @param other the other set
+     * @return the indices in both sets
+     */
+    public CandidateSet and(CandidateSet other) {
+        int[] keys = new int[Math.min(this.keys.length, other.keys.length)];
+        Container[] containers = new Container[keys.length];
+        int groups = 0;
+        for (int i = 0, j = 0; i < this.keys.length && j < other.keys.length; ) {
+            if (this.keys[i] < other.keys[j]) i++;
+            else if (this.keys[i] > other.keys[j]) j++;
+            else {
+                Container container = this.containers[i].and(other.containers[j]);
+                if (container.cardinality() > 0) {
+                    keys[groups] = this.keys[i];
+                    containers[groups++] = container;
+                }
+                i++;
+                j++;
+            }
+        }
+        return new CandidateSet(Arrays.copyOf(keys, groups), Arrays.copyOf(containers, groups));
+    }
+
+
+    // HELPERS METHODS ------------------------------------------------------------
+    /**
+     * Counts a sighting of a guess, so that guesses played once do not fill the cache of partitions.
+     * The counts are shared by hash and not synchronized: they only need to be about right.
+     *
+     * @return true if the guess was seen PARTITION_SIGHTINGS times
+     */
+    private static boolean isHot(int guess) {
+        int slot = (guess * 0x9E3779B9) >>> 20;
+        if (SIGHTINGS[slot] >= PARTITION_SIGHTINGS) return true;
+        SIGHTINGS[slot]++;
+        return false;
+    }
+
+    /**
+     * Splits the pool of secret words by the feedback they give to a guess.
+     *
+     * @param guess the packed guess
+     * @return the set of each feedback
+     */
+    private static CandidateSet[] partition(Integer guess) {
+        int[] pool = WordDictionary.getSecretPool();
+        byte[] feedbacks = new byte[pool.length];
+        int[] starts = new int[FeedbackScorer.PATTERNS + 1];
+        for (int i = 0; i < pool.length; i++) {
+            feedbacks[i] = (byte) FeedbackScorer.compute(pool[i], guess);
+            starts[(feedbacks[i] & 0xFF) + 1]++;
+        }
+        for (int feedback = 0; feedback < FeedbackScorer.PATTERNS; feedback++) starts[feedback + 1] += starts[feedback];
+
+        // Indices grouped by feedback, still increasing within a group
+        int[] grouped = new int[pool.length];
+        int[] next = Arrays.copyOf(starts, FeedbackScorer.PATTERNS);
+        for (int i = 0; i < pool.length; i++) grouped[next[feedbacks[i] & 0xFF]++] = i;
+
+        CandidateSet[] partition = new CandidateSet[FeedbackScorer.PATTERNS];
+        for (int feedback = 0; feedback < FeedbackScorer.PATTERNS; feedback++) {
+            int from = starts[feedback], to = starts[feedback + 1];
+            partition[feedback] = from == to ? EMPTY : of(Arrays.copyOfRange(grouped, from, to), to - from);
+        }
+        return partition;
+    }
+
+    /**
+     * The low 16 bits of the indices of a group.
+     */
+    private static abstract class Container {
+        abstract int cardinality();
+        abstract boolean contains(int low);
+        abstract Container and(Container other);
+
+        /**
+         * Copies the indices, the high bits added, from a position of an array.
+         *
+         * @return the position after the last index copied
+         */
+        abstract int copyTo(int high, int[] into, int at);
+    }
+
+    /**
+     * A group of up to ARRAY_LIMIT indices, as a sorted array.
+     */
+    private static class ArrayContainer extends Container {
+        private final char[] values;
+
+        ArrayContainer(char[] values) { this.values = values; }
+
+        static ArrayContainer of(int[] sorted, int from, int to) {
+            char[] values = new char[to - from];
+            for (int i = from; i < to; i++) values[i - from] = (char) sorted[i];
+            return new ArrayContainer(values);
+        }
+
+        @Override int cardinality() { return values.length; }
+        @Override boolean contains(int low) { return Arrays.binarySearch(values, (char) low) >= 0; }
+
+        @Override
+        Container and(Container other) {
+            char[] kept = new char[values.length];
+            int count = 0;
+            if (other instanceof BitmapContainer) {
+                for (char value : values)
+                    if (other.contains(value)) kept[count++] = value;
+            }
+            else {
+                char[] those = ((ArrayContainer) other).values;
+                for (int i = 0, j = 0; i < values.length && j < those.length; ) {
+                    if (values[i] < those[j]) i++;
+                    else if (values[i] > those[j]) j++;
+                    else {
+                        kept[count++] = values[i++];
+                        j++;
+                    }
+                }
+            }
+            return new ArrayContainer(Arrays.copyOf(kept, count));
+        }
+
+        @Override
+        int copyTo(int high, int[] into, int at) {
+            for (char value : values) into[at++] = high | value;
+            return at;
+        }
+    }
+
+    /**
+     * A group of more than ARRAY_LIMIT indices, as a bitmap of the 2^16 low values.
+     */
+    private static class BitmapContainer extends Container {
+        private final long[] words;
+        private final int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        static BitmapContainer of(int[] sorted, int from, int to) {
+            long[] words = new long[1 << 10];
+            for (int i = from; i < to; i++) words[(sorted[i] & 0xFFFF) >>> 6] |= 1L << sorted[i];
+            return new BitmapContainer(words, to - from);
+        }
+
+        @Override int cardinality() { return cardinality; }
+        @Override boolean contains(int low) { return (words[low >>> 6] & (1L << low)) != 0; }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) return other.and(this);
+
+            long[] those = ((BitmapContainer) other).words;
+            long[] kept = new long[words.length];
+            int cardinality = 0;
+            for (int i = 0; i < words.length; i++) {
+                kept[i] = words[i] & those[i];
+                cardinality += Long.bitCount(kept[i]);
+            }
+            if (cardinality > ARRAY_LIMIT) return new BitmapContainer(kept, cardinality);
+
+            char[] values = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < kept.length; i++)
+                for (long word = kept[i]; word != 0; word &= word - 1) values[count++] = (char) (i << 6 | Long.numberOfTrailingZeros(word));
+            return new ArrayContainer(values);
+        }
+
+        @Override
+        int copyTo(int high, int[] into, int at) {
+            for (int i = 0; i < words.length; i++)
+                for (long word = words[i]; word != 0; word &= word - 1) into[at++] = high | i << 6 | Long.numberOfTrailingZeros(word);
+            return at;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The FeedbackScorer class computes the colours of a guess against a secret word, both packed
+ * on 25 bits (see PackedWord), without allocating anything.
+ *
+ * A feedback is a base-3 number from 0 to 242, which fits in a byte: the digit of weight 3^i is
+ * the colour of the letter i, 0 for grey ('B'), 1 for yellow ('Y'), 2 for green ('G').
+ * Letters are matched as in the game: greens first, then yellows from left to right, each letter
+ * of the secret being used at most once. Strings such as "GYBBG" are only produced at the edge,
+ * by toPattern(), from a table.
+ *
+ * score() can go through a small direct-mapped cache of the hottest (secret, guess) pairs, filled
+ * as they are scored; its size is WordleServer.getFeedbackCacheSize(), 0 to disable it. Scoring
+ * is a few tens of nanoseconds, so the cache only pays off where the same pairs come back often.
+ *
+ * scoreAll() scores every guess of an array against every secret of another, for bulk jobs
+ * (analytics, bot detection, solvers): the rows of guesses are split over a fork/join pool.
+ * It is stateless and never goes through the cache.
+ */
+public class FeedbackScorer {
+    public static final int PATTERNS = 243; // 3^5
+    public static final int ALL_GREEN = PATTERNS - 1;
+    public static final int GREY = 0, YELLOW = 1, GREEN = 2;
+
+    private static final int[] WEIGHTS = { 1, 3, 9, 27, 81 };
+    private static final String[] STRINGS = new String[PATTERNS];
+    private static final int[] COLOURS = new int[PATTERNS]; // As packed by PackedWord.encodeColours()
+    static {
+        char[] letters = { 'B', 'Y', 'G' };
+        for (int feedback = 0; feedback < PATTERNS; feedback++) {
+            char[] pattern = new char[PackedWord.LETTERS];
+            for (int i = 0; i < PackedWord.LETTERS; i++) pattern[i] = letters[colourAt(feedback, i)];
+            STRINGS[feedback] = new String(pattern);
+            COLOURS[feedback] = PackedWord.encodeColours(STRINGS[feedback]);
+        }
+    }
+
+    // Entry: 1 valid bit, the 50 bits of the pair, then the feedback on 8 bits
+    private static final int CACHE_SIZE = Integer.highestOneBit(Math.max(0, WordleServer.getFeedbackCacheSize()));
+    private static final AtomicLongArray CACHE = new AtomicLongArray(CACHE_SIZE);
+
+    /**
+     * Scores a guess, from the cache when the pair was scored recently.
+     *
+     * @param secret the packed secret word
+     * @param guess  the packed guess
+     * @return the feedback, from 0 to 242
+     */
+    public static int score(int secret, int guess) {
+        if (CACHE_SIZE == 0) return compute(secret, guess);
+
+        long pair = ((long) secret << 25) | guess;
+        int slot = (int) (mix(pair) & (CACHE_SIZE - 1));
+        long entry = CACHE.get(slot);
+        if (entry >>> 8 == (pair | 1L << 50)) return (int) (entry & 0xFF);
+
+        int feedback = compute(secret, guess);
+        CACHE.lazySet(slot, (pair | 1L << 50) << 8 | feedback);
+        return feedback;
+    }
+
+    /**
+     * Scores a guess.
+     *
+     * @param secret the packed secret word
+     * @param guess  the packed guess
+     * @return the feedback, from 0 to 242
+     */
+    public static int compute(int secret, int guess) {
+        int feedback = 0;
+        int greens = 0;
+        int unmatched = 0; // Positions of the secret whose letter is not used yet
+
+        // Greens: well-placed letters
+        for (int i = 0; i < PackedWord.LETTERS; i++) {
+            if (PackedWord.letterAt(guess, i) == PackedWord.letterAt(secret, i)) {
+                feedback += GREEN * WEIGHTS[i];
+                greens |= 1 << i;
+            }
+            else unmatched |= 1 << i;
+        }
+
+        // Yellows: misplaced letters, matched from left to right with the first unused letter of the secret
+        for (int i = 0; i < PackedWord.LETTERS; i++) {
+            if ((greens & (1 << i)) != 0) continue;
+            int letter = PackedWord.letterAt(guess, i);
+            for (int j = 0; j < PackedWord.LETTERS; j++) {
+                if ((unmatched & (1 << j)) != 0 && PackedWord.letterAt(secret, j) == letter) {
+                    feedback += YELLOW * WEIGHTS[i];
+                    unmatched &= ~(1 << j);
+                    break;
+                }
+            }
+        }
+        return feedback;
+    }
+
+    /**
+     * Scores every guess against every secret on the common fork/join pool.
+     *
+     * @param guesses the packed guesses
+     * @param secrets the packed secret words
+     * @return the feedbacks, guess by guess: the one of guesses[i] against secrets[j] is at
+     *         i * secrets.length + j, to be read as an unsigned byte (& 0xFF)
+     */
+    public static byte[] scoreAll(int[] guesses, int[] secrets) {
+        if ((long) guesses.length * secrets.length > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException(guesses.length + " x " + secrets.length + " feedbacks do not fit in an array");
+
+        byte[] feedbacks = new byte[guesses.length * secrets.length];
+        scoreAll(guesses, secrets, feedbacks, ForkJoinPool.commonPool());
+        return feedbacks;
+    }
+
+    /**
+     * Scores every guess against every secret.
+     *
+     * @param guesses   the packed guesses
+     * @param secrets   the packed secret words
+     * @param feedbacks where the feedbacks go, guess by guess (see scoreAll(int[], int[]))
+     * @param pool      the pool the rows are split over
+     */
+    public static void scoreAll(int[] guesses, int[] secrets, byte[] feedbacks, ForkJoinPool pool) {
+        if (feedbacks.length < (long) guesses.length * secrets.length)
+            throw new IllegalArgumentException("Room for " + feedbacks.length + " feedbacks, " + (long) guesses.length * secrets.length + " needed");
+        if (guesses.length == 0 || secrets.length == 0) return;
+
+        pool.invoke(new BatchTask(guesses, secrets, feedbacks, 0, guesses.length));
+    }
+
+    /**
+     * Returns the colour of a letter.
+     *
+     * @param feedback the feedback
+     * @param i        the position of the letter, from 0
+     * @return GREY, YELLOW or GREEN
+     */
+    public static int colourAt(int feedback, int i) { return feedback / WEIGHTS[i] % 3; }
+
+    /**
+     * Returns a feedback as a pattern such as "GYBBG".
+     *
+     * @param feedback the feedback
+     * @return the pattern, shared: nothing is allocated
+     */
+    public static String toPattern(int feedback) { return STRINGS[feedback]; }
+
+    /**
+     * Returns a feedback as the colours of a session (see PackedWord.encodeColours()).
+     *
+     * @param feedback the feedback
+     * @return the packed colours
+     */
+    public static int toColours(int feedback) { return COLOURS[feedback]; }
+
+    /**
+     * Returns the colours of a session (see PackedWord.encodeColours()) as a feedback.
+     *
+     * @param colours the packed colours
+     * @return the feedback, or -1 if the colours are not a full pattern
+     */
+    public static int fromColours(int colours) {
+        int feedback = 0;
+        for (int i = 0; i < PackedWord.LETTERS; i++) {
+            int colour = (colours >>> (PackedWord.BITS_PER_COLOUR * i)) & 0x3;
+            if (colour == 0) return -1;
+            feedback += (colour - 1) * WEIGHTS[i];
+        }
+        return feedback;
+    }
+
+    /**
+     * Scores a range of guesses, split in halves until it is about BatchTask.LEAF_SIZE feedbacks.
+     */
+    private static class BatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int LEAF_SIZE = 1 << 16;
+
+        private final int[] guesses;
+        private final int[] secrets;
+        private final byte[] feedbacks;
+        private final int from, to; // Guesses from included to excluded
+
+        BatchTask(int[] guesses, int[] secrets, byte[] feedbacks, int from, int to) {
+            this.guesses = guesses;
+            this.secrets = secrets;
+            this.feedbacks = feedbacks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1 && (long) (to - from) * secrets.length > LEAF_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BatchTask(guesses, secrets, feedbacks, from, middle), new BatchTask(guesses, secrets, feedbacks, middle, to));
+                return;
+            }
+            int at = from * secrets.length;
+            for (int i = from; i < to; i++) {
+                int guess = guesses[i];
+                for (int secret : secrets) feedbacks[at++] = (byte) FeedbackScorer.compute(secret, guess);
+            }
+        }
+    }
+
+    /**
+     * The finalizer of MurmurHash3, spreading the pairs over the cache.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
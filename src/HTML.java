@@ -1,11 +1,27 @@
-import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 /**
  * The HTML class is responsible for generating the HTML page for the Wordle game.
  * It includes methods to generate the entire page, the Wordle board, keyboard layout, styles, and other necessary components.
+ * The page is compiled once into a PageTemplate: rendering a page only encodes the error message and the board.
  */
-public class HTML {
-    
+public class HTML implements PageTemplate.SlotWriter {
+    // Built once, when the class is initialized. The script and the styles are served on their own, to be cached
+    private static final StaticAsset SCRIPT = new StaticAsset("/app.js", "application/javascript; charset=utf-8", generateScript());
+    private static final StaticAsset STYLES = new StaticAsset("/app.css", "text/css; charset=utf-8", generateStyles());
+    private static final PageTemplate PAGE = PageTemplate.compile(
+            generatePageHead() +
+            "{{error}}" +
+            "<div id=\"wordle-board\">{{board}}{{state}}</div>\n" +
+            generatePageTail());
+    private static final byte[] EMPTY_BOARD = generateWordleBoard().getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NEW_GAME_STATE = generateStateScript(0).getBytes(StandardCharsets.UTF_8);
+
+    private String gameState = "";
+    private String errorMessage = "";
+    private boolean isNewGame = true;
+    private int lastFilledRow = -1;
+
     /**
      * Generates the Wordle game HTML page with the given game state.
      * This overloaded method calls the primary method with an empty error message.
@@ -19,23 +35,31 @@ public class HTML {
 
     /**
      * Generates the Wordle game HTML page with the given game state and an optional error message.
-     * This method orchestrates the creation of the entire page including the header, Wordle board, keyboard, and error messages if any.
      * 
      * @param gameState    the current game state
      * @param errorMessage an optional error message to display on the page
      * @return the HTML page as a String
      */
     public String generateWordlePage(String gameState, String errorMessage) {
-        // Image to base64
-        String base64Image = "";
-        try { base64Image = ImageEncoder.encodeImageToBase64("logo.png"); } 
-        catch (IOException e) { e.printStackTrace(); } 
-        
-        String title = "Wordle Game";
-        String header = "<header><img src=\"data:image/png;base64,"+base64Image+"\" alt=\"WORDLE\"></header>";
-        String wordleBoard = "";
-        
-        boolean isNewGame = true;
+        ResponseBuffer out = new ResponseBuffer();
+        writeWordlePage(out, gameState, errorMessage);
+        return out.toString();
+    }
+
+    /**
+     * Appends the Wordle game HTML page with the given game state and an optional error message to the response.
+     * This method orchestrates the creation of the entire page including the header, Wordle board, keyboard, and error messages if any.
+     * 
+     * @param out          the response to append the page to
+     * @param gameState    the current game state
+     * @param errorMessage an optional error message to display on the page
+     */
+    public void writeWordlePage(ResponseBuffer out, String gameState, String errorMessage) {
+        this.gameState = gameState;
+        this.errorMessage = errorMessage;
+        this.isNewGame = true;
+        this.lastFilledRow = -1;
+
         String[] parts = gameState.split(";");
         // -1:secret:secret;0:guess:color;1:guess:color;2:guess:color;3:guess:color;4:guess:color;5:guess:color
         for (int i = 1; i < parts.length; i++) {
@@ -44,19 +68,84 @@ public class HTML {
                 break;
             }
         }
-        if (isNewGame) { wordleBoard = generateWordleBoard(); } // For a new game 
-        else { wordleBoard = generateWordleBoardWithState(gameState); } // For a returning player
 
-        // Generate HTML for displaying the error message
-        String errorHtml = "";
-        if (errorMessage != null && !errorMessage.isEmpty())
-            errorHtml = "<div class=\"error-message\">" + errorMessage + "</div>";
+        PAGE.render(out, this);
+    }
 
+    /**
+     * Appends the error message, the board and the position of the player into the slots of the page.
+     * 
+     * @param slot the name of the slot
+     * @param out  the response to append to
+     */
+    @Override
+    public void writeSlot(String slot, ResponseBuffer out) {
+        switch (slot) {
+            // Generate HTML for displaying the error message
+            case "error":
+                if (errorMessage != null && !errorMessage.isEmpty()) {
+                    out.append("<div class=\"error-message\">");
+                    out.append(errorMessage);
+                    out.append("</div>");
+                }
+                break;
+            case "board":
+                if (isNewGame) out.add(EMPTY_BOARD); // For a new game
+                else writeWordleBoardWithState(out, gameState); // For a returning player
+                break;
+            // Position of the player on the board, for the script
+            case "state":
+                if (isNewGame) out.add(NEW_GAME_STATE);
+                else out.append(generateStateScript(lastFilledRow + 1));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown slot " + slot);
+        }
+    }
+
+    // Getters
+    public static StaticAsset getScript() { return SCRIPT; }
+    public static StaticAsset getStyles() { return STYLES; }
+
+    /**
+     * Builds the static page fragments now instead of on the first request.
+     * Calling this method triggers the initialization of the class, which loads the logo.
+     */
+    public static void preload() {
+        System.out.println("-- Page template ready (" + PAGE.getStaticLength() + " static bytes, " +
+                SCRIPT.getContent().length + " bytes of script, " + STYLES.getContent().length + " bytes of styles).");
+    }
 
-        String keyboard = generateKeyboard();
-        String styles = generateStyles();
-        String fallbackForm = fallbackForm();
+    /**
+     * Generates the part of the page preceding the error message and the board:
+     * the document head linking the styles, and the header holding the logo.
+     *
+     * @return the HTML of the beginning of the page
+     */
+    private static String generatePageHead() {
+        String title = "Wordle Game";
+        String header = "<header><img src=\"" + AssetCache.getLogo().getUrl() + "\" alt=\"WORDLE\"></header>";
+
+        return "<!DOCTYPE html>\n" +
+            "<html lang=\"en\">\n" +
+            "<head>\n" +
+            "<meta charset=\"UTF-8\">\n" +
+            "<meta name=\"viewport\" content=\"width=device-width, initial-scale=1.0\">\n" +
+            "<link rel=\"icon\" type=\"image/x-icon\" href=\"data:image/x-icon;,\">\n" + // Empty favicon
+            "<title>" + title + "</title>\n" +
+            "<link rel=\"stylesheet\" href=\"" + STYLES.getUrl() + "\">\n" +
+            "</head>\n" +
+            "<body>\n" +
+            header;
+    }
 
+    /**
+     * Generates the part of the page following the board:
+     * the keyboard, the fallback form, the modal and the scripts.
+     *
+     * @return the HTML of the end of the page
+     */
+    private static String generatePageTail() {
         String modalHtml =
                             "<div id='gameModal' class='modal'>" +
                             "   <div class='modal-content'>" +
@@ -65,6 +154,20 @@ public class HTML {
                             "   </div>" +
                             "</div>";
 
+        return "<div id=\"keyboard\">" + generateKeyboard() + "</div>\n" +
+            fallbackForm() +
+            modalHtml +
+            "<script src=\"" + SCRIPT.getUrl() + "\"></script>" +
+            "</body>\n" +
+            "</html>";
+    }
+
+    /**
+     * Generates the script of the page, holding the whole client-side game logic.
+     *
+     * @return the JavaScript source
+     */
+    private static String generateScript() {
         String fillCell = 
                             "function fillCell(key) {" +
                             "    const cell = document.getElementById(`cell-${currentRow}-${currentCell}`);" +
@@ -282,8 +385,7 @@ public class HTML {
                             "  gameModal.style.display = 'none';" +
                             "};"; 
 
-        String script = "<script>" +
-                        highlightCurrentRowFunction +
+        return highlightCurrentRowFunction +
                         fillCell + 
                         removeLastLetterFunction +
                         onEraseFunction + 
@@ -305,28 +407,7 @@ public class HTML {
                         "    fallbackForm.style.display = 'none';" +
                         "  }" +
                         "});" +
-                        "highlightCurrentRow();" +
-                        "</script>";
-
-        return "<!DOCTYPE html>\n" +
-            "<html lang=\"en\">\n" +
-            "<head>\n" +
-            "<meta charset=\"UTF-8\">\n" +
-            "<meta name=\"viewport\" content=\"width=device-width, initial-scale=1.0\">\n" +
-            "<link rel=\"icon\" type=\"image/x-icon\" href=\"data:image/x-icon;,\">\n" + // Empty favicon
-            "<title>" + title + "</title>\n" +
-            "<style>" + styles + "</style>\n" +
-            "</head>\n" +
-            "<body>\n" +
-            header +
-            errorHtml + 
-            "<div id=\"wordle-board\">" + wordleBoard + "</div>\n" +
-            "<div id=\"keyboard\">" + keyboard + "</div>\n" +
-            fallbackForm +
-            modalHtml +
-            script +
-            "</body>\n" +
-            "</html>";
+                        "highlightCurrentRow();";
     }
 
     /**
@@ -335,7 +416,7 @@ public class HTML {
      * 
      * @return a string representing the initial empty Wordle board HTML
      */
-    private String generateWordleBoard() {
+    private static String generateWordleBoard() {
         StringBuilder boardBuilder = new StringBuilder();
         for (int i = 0; i < 6; i++) {
             boardBuilder.append("<div class=\"word-row\" id=\"row-").append(i).append("\">");
@@ -344,24 +425,28 @@ public class HTML {
             }
             boardBuilder.append("</div>");
         }
-    
-        // Initialize the game state for a new game
-        String scriptUpdate = "<script>let currentRow = 0; let currentGuess = ''; let currentCell = 0;</script>";
-    
-        return boardBuilder.toString() + scriptUpdate;
+        return boardBuilder.toString();
+    }
+
+    /**
+     * Generates the script setting the position of the player on the board.
+     * 
+     * @param currentRow the row of the next guess
+     * @return the script as a String
+     */
+    private static String generateStateScript(int currentRow) {
+        return "<script>let currentRow = " + currentRow + "; let currentGuess = ''; let currentCell = 0;</script>";
     }
     
     /**
-     * Generates a Wordle board based on the given game state.
+     * Appends a Wordle board based on the given game state.
      * This method creates the board layout with guesses and color feedback for a game in progress.
      * 
+     * @param out       the response to append the board to
      * @param gameState the game state represented as a string
-     * @return a string representing the Wordle board HTML with the current game state
      */
-    private String generateWordleBoardWithState(String gameState) {
-        StringBuilder boardBuilder = new StringBuilder();
+    private void writeWordleBoardWithState(ResponseBuffer out, String gameState) {
         String[] tries = gameState.split(";");
-        int lastFilledRow = -1;
         boolean gameEnded = false;
         boolean playerWon = false;
         String secretWord = "";
@@ -386,24 +471,26 @@ public class HTML {
             boolean isCurrentRow = i-1 == lastFilledRow + 1; // Check if this is the current row
             String rowClass = isCurrentRow ? "word-row highlight-row" : "word-row";
 
-            boardBuilder.append("<div class=\"").append(rowClass).append("\" id=\"row-").append(i-1).append("\">");
+            out.append("<div class=\"");
+            out.append(rowClass);
+            out.append("\" id=\"row-");
+            out.append(i-1);
+            out.append("\">");
 
             for (int j = 0; j < 5; j++) {
                 char letter = guess.length() > j ? guess.charAt(j) : ' ';
                 char colorCode = color.length() > j ? color.charAt(j) : ' ';
                 String colorClass = getColorClass(colorCode);
-                String cellContent = letter != ' ' ? String.valueOf(letter) : "";
-                String cellClass = "word-cell" + (colorClass.isEmpty() ? "" : " " + colorClass);
-
-                boardBuilder.append("<div class=\"" + cellClass + "\" id=\"cell-")
-                            .append(i-1)
-                            .append("-")
-                            .append(j)
-                            .append("\">")
-                            .append(cellContent)
-                            .append("</div>");
+
+                out.append(colorClass.isEmpty() ? "<div class=\"word-cell\" id=\"cell-" : "<div class=\"word-cell " + colorClass + "\" id=\"cell-");
+                out.append(i-1);
+                out.append("-");
+                out.append(j);
+                out.append("\">");
+                if (letter != ' ') out.append(String.valueOf(letter));
+                out.append("</div>");
             }
-            boardBuilder.append("</div>");
+            out.append("</div>");
 
             // Check for win condition
             if (color.equals("GGGGG")) {
@@ -412,23 +499,20 @@ public class HTML {
             }
         }
         
-        System.out.println("lastFilledRow: " + lastFilledRow);
+        if (Log.isDebugEnabled()) Log.debug("Last filled row: " + lastFilledRow);
 
         if (!gameEnded && lastFilledRow == 5) gameEnded = true;
 
         if (gameEnded) {
             String modalMessage = playerWon ? "Congratulations, You Won!" : "Game Over. The correct word was: " + secretWord.toUpperCase();
-            boardBuilder.append("<form action='/restart' method='post'>")
-                        .append("<div class=\"modal\" style=\"display: block;\">")
-                        .append("<p>").append(modalMessage).append("</p>")
-                        .append("<input type='submit' value='Restart Game'>")
-                        .append("</div></form>");
+            out.append("<form action='/restart' method='post'>");
+            out.append("<div class=\"modal\" style=\"display: block;\">");
+            out.append("<p>");
+            out.append(modalMessage);
+            out.append("</p>");
+            out.append("<input type='submit' value='Restart Game'>");
+            out.append("</div></form>");
         }
-
-        // Update currentRow and currentGuess in the script
-        String scriptUpdate = "<script>let currentRow = " + (lastFilledRow + 1) + "; let currentGuess = ''; let currentCell = 0;</script>";
-    
-        return boardBuilder.toString() + scriptUpdate;
     }    
     
     /**
@@ -451,7 +535,7 @@ public class HTML {
      * 
      * @return the HTML representation of the keyboard as a String
      */
-    private String generateKeyboard() {
+    private static String generateKeyboard() {
         String[][] keyRows = {
             {"A", "Z", "E", "R", "T", "Y", "U", "I", "O", "P"},
             {"Q", "S", "D", "F", "G", "H", "J", "K", "L", "M"},
@@ -486,7 +570,7 @@ public class HTML {
      *
      * @return the HTML form as a string
      */
-    public String fallbackForm() {
+    public static String fallbackForm() {
         return "<noscript>" +
                 "<form action=\"/play.html/guess\" method=\"POST\">" +
                 "<input type=\"text\" name=\"guess\" required pattern=\"[A-Za-z]{5}\" maxlength=\"5\">" +
@@ -500,7 +584,7 @@ public class HTML {
      *
      * @return The generated styles as a String.
      */
-    private String generateStyles() {
+    private static String generateStyles() {
         return "body { font-family: Arial, sans-serif; background-color: #121213; color: white; }" +
                 "header { text-align: center; padding: 20px; }" +
                 "#wordle-board { margin-bottom: 20px; }" +
@@ -0,0 +1,150 @@
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The HeapSessionStore class holds the game sessions on the heap, with a bounded size and a background expiry.
+ *
+ * The sessions only live in a ConcurrentHashMap, and an activity is recorded as a timestamp on
+ * the session itself, so requests never wait for each other on the store. The least recently
+ * active session is approximated as Redis does: when the store is full, a cursor walks the map a
+ * few sessions at a time, and the least recently active of these is the one evicted. The sweeper
+ * walks the whole map and removes the sessions that expired.
+ */
+public class HeapSessionStore implements SessionStore {
+    private static final int EVICTION_SAMPLES = 8; // Sessions compared to pick the one evicted
+
+    private final Map<String, SessionData> sessions = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock(); // Only taken when the store is full
+    private Iterator<Map.Entry<String, SessionData>> cursor = sessions.entrySet().iterator(); // Guarded by evictionLock
+    private final int maxSessions;
+
+    // Metrics
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    /**
+     * Creates a store holding at most maxSessions sessions.
+     *
+     * @param maxSessions the maximum number of live sessions
+     */
+    public HeapSessionStore(int maxSessions) {
+        this.maxSessions = maxSessions;
+    }
+
+    // Getters
+    @Override public SessionData get(String id) { return sessions.get(id); }
+    @Override public boolean contains(String id) { return sessions.containsKey(id); }
+    @Override public int size() { return sessions.size(); }
+    @Override public int getMaxSessions() { return maxSessions; }
+    @Override public long getCreatedCount() { return created.get(); }
+    @Override public long getExpiredCount() { return expired.get(); }
+    @Override public long getEvictedCount() { return evicted.get(); }
+
+    /**
+     * Adds or replaces a session, evicting sessions among the least recently active beyond the capacity.
+     *
+     * @param id      the session ID
+     * @param session the session
+     * @return the session given, which the store holds itself
+     */
+    @Override
+    public SessionData put(String id, SessionData session) {
+        insert(id, session);
+        created.incrementAndGet();
+        return session;
+    }
+
+    @Override
+    public void restore(long msb, long lsb, SessionData session) { insert(new UUID(msb, lsb).toString(), session); }
+
+    private void insert(String id, SessionData session) {
+        sessions.put(id, session);
+        if (sessions.size() > maxSessions) evictBeyondCapacity();
+    }
+
+    /**
+     * Records an activity on a session. Only the session is written: no lock is taken.
+     *
+     * @param id the session ID
+     */
+    @Override
+    public void touch(String id) {
+        SessionData session = sessions.get(id);
+        if (session != null) session.updateLastActivityTime();
+    }
+
+    /**
+     * Removes a session.
+     *
+     * @param id the session ID
+     */
+    @Override
+    public void remove(String id) {
+        sessions.remove(id);
+    }
+
+    /**
+     * Walks the sessions through the ConcurrentHashMap, whose iterators never lock nor fail.
+     * IDs that are not UUIDs are skipped.
+     *
+     * @param changedOnly true to only walk the sessions changed since they were last walked
+     * @param visitor     the receiver of the sessions
+     */
+    @Override
+    public void forEach(boolean changedOnly, Visitor visitor) {
+        for (Map.Entry<String, SessionData> entry : sessions.entrySet()) {
+            SessionData session = entry.getValue();
+            if (!session.clearChanged() && changedOnly) continue;
+            UUID id;
+            try { id = UUID.fromString(entry.getKey()); }
+            catch (IllegalArgumentException e) { continue; }
+            visitor.visit(id.getMostSignificantBits(), id.getLeastSignificantBits(), session);
+        }
+    }
+
+    /**
+     * Removes the expired sessions. A session touched while the sweep runs is kept, as it is only
+     * removed if it still expired when looked at.
+     *
+     * @return the number of sessions removed
+     */
+    @Override
+    public int sweep() {
+        int removed = 0;
+        for (Map.Entry<String, SessionData> entry : sessions.entrySet()) {
+            SessionData session = entry.getValue();
+            if (session.isExpired() && sessions.remove(entry.getKey(), session)) removed++;
+        }
+        expired.addAndGet(removed);
+        return removed;
+    }
+
+
+    // HELPERS METHODS ------------------------------------------------------------
+    /**
+     * Evicts sessions until the store is back to its capacity. Each time, the cursor moves on by
+     * EVICTION_SAMPLES sessions, starting over at the end of the map, and the least recently
+     * active of them is removed.
+     */
+    private void evictBeyondCapacity() {
+        evictionLock.lock();
+        try {
+            while (sessions.size() > maxSessions) {
+                Map.Entry<String, SessionData> oldest = null;
+                for (int i = 0; i < EVICTION_SAMPLES; i++) {
+                    if (!cursor.hasNext()) cursor = sessions.entrySet().iterator();
+                    if (!cursor.hasNext()) return;
+                    Map.Entry<String, SessionData> entry = cursor.next();
+                    if (oldest == null || entry.getValue().getLastActivityTime() < oldest.getValue().getLastActivityTime()) oldest = entry;
+                }
+                if (sessions.remove(oldest.getKey(), oldest.getValue())) evicted.incrementAndGet();
+            }
+        }
+        finally { evictionLock.unlock(); }
+    }
+}
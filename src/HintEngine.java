@@ -0,0 +1,224 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The HintEngine class suggests the best next guess of a session: the word that is expected
+ * to tell the most about the secret, i.e. whose feedbacks split the remaining candidates
+ * the most evenly (the entropy of the feedbacks, in bits).
+ *
+ * The candidates are the words of the secret pool consistent with every feedback of the session,
+ * narrowed down by the session on each guess (see CandidateSet). Every word of the dictionary
+ * is then ranked against at most SAMPLE_SIZE of them, evenly spread, on the common fork/join pool,
+ * the candidates first since they may win. Ranking stops at the deadline given by the caller: the hint is then the best word seen so far.
+ *
+ * The first hint of a game does not depend on the session: it is ranked once in the background,
+ * without deadline, by start().
+ */
+public class HintEngine {
+    private static final int SAMPLE_SIZE = 1024; // Candidates the guesses are ranked against
+    private static final int LEAF_SIZE = 64; // Guesses ranked by a task, between two looks at the deadline
+    private static final double[] N_LOG_N = new double[SAMPLE_SIZE + 1]; // n * log2(n)
+    static {
+        for (int n = 1; n <= SAMPLE_SIZE; n++) N_LOG_N[n] = n * Math.log(n) / Math.log(2);
+    }
+
+    private static volatile Hint opening = null; // The first hint, once ranked
+
+    /**
+     * Ranks the first hint of a game in the background.
+     */
+    public static void start() {
+        Thread thread = new Thread(() -> {
+            long start = System.nanoTime();
+            opening = rank(WordDictionary.getSecretPool(), start + Long.MAX_VALUE / 2); // No deadline
+            System.out.println("-- Opening hint: " + opening.getWord() + " (" + (System.nanoTime() - start) / 1_000_000 + " ms)");
+        }, "hint-opening");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Suggests the next guess of a session.
+     *
+     * @param session the session
+     * @param budgetNanos the time allowed to rank the guesses
+     * @return the hint, or null if no word of the dictionary is consistent with the session
+     */
+    public static Hint suggest(SessionData session, long budgetNanos) {
+        long deadline = System.nanoTime() + budgetNanos;
+
+        // Feedbacks played so far
+        int rows = Math.min(session.getAttempt(), SessionData.ROWS);
+        int[] guesses = new int[rows];
+        int[] feedbacks = new int[rows];
+        int played = 0;
+        for (int row = 0; row < rows; row++) {
+            int feedback = FeedbackScorer.fromColours(session.getColours(row));
+            if (session.getGuess(row) == PackedWord.NONE || feedback < 0) continue;
+            guesses[played] = session.getGuess(row);
+            feedbacks[played++] = feedback;
+        }
+
+        Hint first = opening;
+        if (played == 0 && first != null) return first;
+
+        // A secret restored from an older pool may be outside the current one
+        int[] candidates = toWords(session.getCandidates());
+        if (candidates.length == 0) candidates = filter(WordDictionary.getWords(), guesses, feedbacks, played);
+        if (candidates.length == 0) return null;
+        return rank(candidates, deadline);
+    }
+
+
+    // HELPERS METHODS ------------------------------------------------------------
+    /**
+     * Returns the words of the secret pool a set of candidates stands for.
+     */
+    private static int[] toWords(CandidateSet candidates) {
+        int[] pool = WordDictionary.getSecretPool();
+        int[] words = candidates.toArray();
+        for (int i = 0; i < words.length; i++) words[i] = pool[words[i]];
+        return words;
+    }
+
+    /**
+     * Keeps the words that would have given the same feedbacks as the secret.
+     */
+    private static int[] filter(int[] words, int[] guesses, int[] feedbacks, int played) {
+        int[] kept = new int[words.length];
+        int count = 0;
+        for (int word : words) {
+            boolean consistent = true;
+            for (int i = 0; i < played && consistent; i++) consistent = FeedbackScorer.compute(word, guesses[i]) == feedbacks[i];
+            if (consistent) kept[count++] = word;
+        }
+        return Arrays.copyOf(kept, count);
+    }
+
+    /**
+     * Ranks the words of the dictionary against the candidates until the deadline.
+     */
+    private static Hint rank(int[] candidates, long deadline) {
+        // Two candidates or less: one of them, it may win
+        if (candidates.length <= 2) return new Hint(candidates[0], candidates.length == 2 ? 1 : 0, candidates.length, 1, true);
+
+        // The candidates first, then the other words
+        int[] sorted = candidates.clone();
+        Arrays.sort(sorted);
+        int[] words = WordDictionary.getWords();
+        int[] guesses = Arrays.copyOf(candidates, candidates.length + words.length);
+        int count = candidates.length;
+        for (int word : words)
+            if (Arrays.binarySearch(sorted, word) < 0) guesses[count++] = word;
+
+        int[] sample = candidates;
+        if (candidates.length > SAMPLE_SIZE) {
+            sample = new int[SAMPLE_SIZE];
+            for (int i = 0; i < SAMPLE_SIZE; i++) sample[i] = candidates[(int) ((long) i * candidates.length / SAMPLE_SIZE)];
+        }
+
+        Ranking best = ForkJoinPool.commonPool().invoke(new RankTask(guesses, sample, 0, count, deadline));
+        if (best.index < 0) best = new Ranking(0, 0, 0); // Out of time before the first leaf
+        return new Hint(guesses[best.index], best.bits, candidates.length, best.ranked, best.ranked == count);
+    }
+
+    /**
+     * The best guess of a range, and how many guesses were ranked.
+     */
+    private static class Ranking {
+        final int index; // Of the best guess, -1 if none was ranked
+        final double bits;
+        final int ranked;
+
+        Ranking(int index, double bits, int ranked) {
+            this.index = index;
+            this.bits = bits;
+            this.ranked = ranked;
+        }
+
+        /**
+         * Keeps the best of two rankings, the one of the lower range on a tie.
+         */
+        Ranking merge(Ranking upper) {
+            boolean better = upper.index >= 0 && (this.index < 0 || upper.bits > this.bits);
+            return new Ranking(better ? upper.index : this.index, better ? upper.bits : this.bits, this.ranked + upper.ranked);
+        }
+    }
+
+    /**
+     * Ranks a range of guesses, split in halves down to LEAF_SIZE guesses.
+     */
+    private static class RankTask extends RecursiveTask<Ranking> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] guesses;
+        private final int[] sample;
+        private final int from, to; // Guesses from included to excluded
+        private final long deadline;
+
+        RankTask(int[] guesses, int[] sample, int from, int to, long deadline) {
+            this.guesses = guesses;
+            this.sample = sample;
+            this.from = from;
+            this.to = to;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected Ranking compute() {
+            if (to - from > LEAF_SIZE) {
+                int middle = (from + to) >>> 1;
+                RankTask upper = new RankTask(guesses, sample, middle, to, deadline);
+                upper.fork();
+                Ranking lower = new RankTask(guesses, sample, from, middle, deadline).compute();
+                return lower.merge(upper.join());
+            }
+            if (System.nanoTime() - deadline > 0) return new Ranking(-1, 0, 0);
+
+            int[] counts = new int[FeedbackScorer.PATTERNS];
+            int best = -1;
+            double bestBits = 0;
+            for (int i = from; i < to; i++) {
+                Arrays.fill(counts, 0);
+                int guess = guesses[i];
+                for (int secret : sample) counts[FeedbackScorer.compute(secret, guess)]++;
+
+                double sum = 0;
+                for (int n : counts) sum += N_LOG_N[n];
+                double bits = (N_LOG_N[sample.length] - sum) / sample.length;
+                if (best < 0 || bits > bestBits) {
+                    best = i;
+                    bestBits = bits;
+                }
+            }
+            return new Ranking(best, bestBits, to - from);
+        }
+    }
+
+    /**
+     * A suggested guess.
+     */
+    public static class Hint {
+        private final int word;
+        private final double bits;
+        private final int candidates;
+        private final int ranked;
+        private final boolean complete;
+
+        Hint(int word, double bits, int candidates, int ranked, boolean complete) {
+            this.word = word;
+            this.bits = bits;
+            this.candidates = candidates;
+            this.ranked = ranked;
+            this.complete = complete;
+        }
+
+        // Getters
+        public String getWord() { return PackedWord.decode(word); }
+        public double getBits() { return bits; } // Expected information of the guess
+        public int getCandidates() { return candidates; } // Secrets still possible
+        public int getRanked() { return ranked; } // Guesses ranked before the deadline
+        public boolean isComplete() { return complete; } // False if the deadline cut the ranking short
+    }
+}
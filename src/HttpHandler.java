@@ -1,58 +1,249 @@
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Random;
 import java.util.UUID;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 
 /**
  * The HttpHandler class is responsible for handling HTTP requests from clients.
  * It implements the Runnable interface to allow for concurrent handling of requests.
+ * A handler serves all the requests of one persistent (keep-alive) connection, in order.
  */
-public class HttpHandler implements Runnable {
+public class HttpHandler implements Runnable, Closeable {
+    private static final String CRLF = "\r\n";
+    private static final int IDLE_CHECK_INTERVAL = 50; // ms between two checks for connections waiting for the thread, while idle
     private final int serverID;
     private final Socket clientSocket;
+    private int requestCount = 0;
+    private boolean keepAlive = true;
+    private boolean bodyPending = false;
     private boolean newSession = false;
     private boolean isChunked = false;
     private boolean isRequestGuess = false;
+    private boolean isRequestHint = false;
+    private boolean sessionChanged = false; // The game state changed: to be logged before answering
     private boolean isJavaScriptEnabled = true;
     private boolean keepAliveRequest = false;
+    private boolean timedOut = false; // The request was not received within its deadline
     private int rowID = -1; // -1 means no rowID (initial state)
+    private int contentLength = 0;
     private String sessionID = "";
+    private SessionData session = null; // Resolved once per request: the store may drop it meanwhile
     private String guess = "";
-    private char[] buffer = null;
-    private final Map<String, String> headers = new HashMap<String, String>();
-    private String method;
+    private HttpMethod method;
+
+    // Bytes received on the connection: [inPos, inLimit) is not consumed yet
+    private final HttpRequestParser parser = new HttpRequestParser();
+    private InputStream input;
+    private byte[] in = new byte[4096];
+    private int inPos = 0;
+    private int inLimit = 0;
+    private long requestDeadline = 0; // System.nanoTime() by which the request must be received, 0 until its first byte
+    private long idleSince = 0; // System.nanoTime() since which the connection waits for its next request
+    private int soTimeout = -1; // Timeout of the socket reads, in ms
+
+    // Responses not sent yet, in the order of the requests
+    private final ResponseBuffer response = new ResponseBuffer();
 
     public HttpHandler(int serverID, Socket clientSocket) {
         this.serverID = serverID;
         this.clientSocket = clientSocket;
     }
 
+    /**
+     * Creates a handler that is not bound to a socket.
+     * Used by the selector front end, which feeds complete requests through {@link #handle}.
+     *
+     * @param serverID the ID of the server, sent back in the Server header
+     */
+    public HttpHandler(int serverID) {
+        this(serverID, null);
+    }
+
+    // Getters
+    public ResponseBuffer getResponse() { return response; }
+
+    /**
+     * Closes the connection without serving it, when the handler will not run.
+     *
+     * @throws IOException if the socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (clientSocket != null) clientSocket.close();
+    }
+
     @Override
     public void run() {
-        try {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-            PrintWriter writer = new PrintWriter(clientSocket.getOutputStream(), false);
+        Metrics.connectionOpened();
+        try (Socket socket = clientSocket) {
+            // The reads are bounded by the keep-alive timeout between requests, by the request deadline within one (see fill())
+            socket.setTcpNoDelay(true);
+
+            InputStream input = socket.getInputStream();
+            // Sockets accepted from a channel are written with gathering writes, others through a buffer
+            SocketChannel channel = socket.getChannel();
+            OutputStream output = channel == null ? new BufferedOutputStream(socket.getOutputStream(), 8192) : null;
+
+            // Serve requests until the client closes, asks to close, or a limit is reached
+            while (handle(input)) {
+                // Pipelined requests are already received: answer them all before flushing
+                if (inPos == inLimit && input.available() == 0) flush(channel, output);
+            }
+            flush(channel, output);
+        } 
+        catch (SocketTimeoutException e) { /* Idle connection, close it */ }
+        catch (IOException e) { Log.error("Connection failed", e); }
+        catch (RuntimeException e) { Log.error("Request failed, closing connection", e); }
+        finally { Metrics.connectionClosed(); }
+    }
 
-            // Read the HTTP request
-            String requestLine = reader.readLine();
+    /**
+     * Writes the responses waiting in the buffer to the client, then empties it.
+     *
+     * @param channel the channel of the socket, or null
+     * @param output  the buffered stream of the socket, used when there is no channel
+     * @throws IOException if writing fails
+     */
+    private void flush(SocketChannel channel, OutputStream output) throws IOException {
+        if (response.isEmpty()) return;
+        Metrics.countBytesWritten(response.length());
+        if (channel != null) response.writeTo(channel);
+        else {
+            response.writeTo(output);
+            output.flush();
+        }
+        response.clear();
+    }
 
-            // Process the request
-            handleRequest(requestLine, reader, writer);
+    /**
+     * Reads a single HTTP request from the given input and appends the response to the buffer returned by {@link #getResponse()}.
+     * Bytes received after the request are kept for the next call (pipelining).
+     * The caller owns the stream and the buffer: it is responsible for sending and clearing the buffer.
+     *
+     * @param input the InputStream the request is read from
+     * @return true if the connection should be kept open for another request, false otherwise
+     * @throws IOException if the request cannot be read
+     */
+    public boolean handle(InputStream input) throws IOException {
+        this.input = input;
+        ResponseBuffer out = this.response;
+
+        // Every request on the connection starts from a clean state
+        resetRequestState();
+
+        // Read the HTTP request head
+        int headEnd;
+        long parseTime = 0;
+        while (true) {
+            long start = System.nanoTime();
+            headEnd = parser.parse(in, inPos, inLimit);
+            parseTime += System.nanoTime() - start;
+            if (headEnd != HttpRequestParser.INCOMPLETE) break;
 
-            reader.close();
-            writer.close();
-            clientSocket.close();
-        } 
-        catch (IOException e) { e.printStackTrace(); }
+            try {
+                if (!fill()) {
+                    if (inPos == inLimit) return false; // Connection closed by the client
+                    if (inLimit - inPos >= WordleServer.getMaxRequestSize()) {
+                        Log.warn("Request head exceeds " + WordleServer.getMaxRequestSize() + " bytes");
+                        this.keepAlive = false;
+                        sendErrorResponse(out, 400);
+                    }
+                    return false;
+                }
+            }
+            catch (SocketTimeoutException e) {
+                if (this.requestDeadline == 0) {
+                    // Idle connection: kept up to the keep-alive timeout, unless it was served and other connections wait for the thread
+                    if (System.nanoTime() - idleSince < WordleServer.getKeepAliveTimeout() * 1_000_000L
+                            && (this.requestCount == 0 || !WordleServer.hasWaitingConnections())) continue;
+                    throw e; // Closed by the caller
+                }
+                Log.warn("Request head not received in time ::" + (inLimit - inPos) + " bytes");
+                sendErrorResponse(out, 408);
+                return false;
+            }
+        }
+        if (headEnd == HttpRequestParser.LINE_TOO_LONG) {
+            Log.warn("Request line exceeds " + WordleServer.getMaxRequestLine() + " bytes");
+            sendErrorResponse(out, 414);
+            return false;
+        }
+        if (headEnd == HttpRequestParser.HEADERS_TOO_LARGE) {
+            Log.warn("Request headers exceed " + WordleServer.getMaxHeaderSize() + " bytes or " + WordleServer.getMaxHeaders() + " fields");
+            sendErrorResponse(out, 431);
+            return false;
+        }
+        this.requestCount++;
+        this.keepAlive = this.requestCount < WordleServer.getMaxKeepAliveRequests();
+        // The thread of a blocking connection is not kept for its next request while other connections wait for one
+        if (this.keepAlive && clientSocket != null && WordleServer.hasWaitingConnections()) this.keepAlive = false;
+        Metrics.recordParseTime(parseTime);
+        Metrics.countRequest(parser.getRoute());
+
+        // The head stays in the buffer, where the parser points to, until the body is read
+        this.inPos = headEnd;
+
+        // Process the request, and in durable mode, wait until its guess is on disk before answering
+        long start = System.nanoTime();
+        handleRequest(out);
+        Metrics.recordRenderTime(System.nanoTime() - start);
+        if (this.sessionChanged) WordleServer.commitSession(this.sessionID, this.session);
+        return this.keepAlive;
+    }
+
+    /**
+     * Resets the per-request state before the next request of a persistent connection.
+     */
+    private void resetRequestState() {
+        this.bodyPending = false;
+        this.newSession = false;
+        this.isChunked = false;
+        this.isRequestGuess = false;
+        this.isRequestHint = false;
+        this.sessionChanged = false;
+        this.isJavaScriptEnabled = true;
+        this.keepAliveRequest = false;
+        this.timedOut = false;
+        this.rowID = -1;
+        this.contentLength = 0;
+        this.sessionID = "";
+        this.session = null;
+        this.guess = "";
+        this.method = null;
+        this.parser.reset();
+
+        // Start from the beginning of the buffer when everything was consumed
+        if (inPos == inLimit) inPos = inLimit = 0;
+        // Pipelined bytes are the start of the next request
+        this.idleSince = System.nanoTime();
+        this.requestDeadline = inPos == inLimit ? 0 : this.idleSince + WordleServer.getRequestTimeout() * 1_000_000L;
+    }
+
+    /**
+     * Answers a request that was not received in time with 408 Request Timeout, closing the connection.
+     * Used by the selector front end, which receives the requests itself.
+     */
+    public void sendRequestTimeout() { sendErrorResponse(this.response, 408); }
+
+    /**
+     * Replaces the response of a request that failed with 500 Internal Server Error, closing the connection.
+     * Used by the selector front end, whose buffer only holds the response of the current request.
+     */
+    public void sendServerError() {
+        this.response.clear();
+        sendErrorResponse(this.response, 500);
     }
 
 
@@ -63,13 +254,11 @@ public class HttpHandler implements Runnable {
      * retrieves the guess for a POST request, checks the validity of the guess,
      * checks if the game is over, and responds accordingly.
      *
-     * @param requestLine The request line of the HTTP request.
-     * @param reader      The BufferedReader used to read the request body.
-     * @param writer      The PrintWriter used to send the HTTP response.
+     * @param out the buffer the response is appended to
      */
-    private void handleRequest(String requestLine, BufferedReader reader, PrintWriter writer) {
+    private void handleRequest(ResponseBuffer out) {
         // Validate the HTTP request format
-        boolean success = formatCheck(requestLine, reader, writer);
+        boolean success = formatCheck(out);
         if (!success) return;
 
         // At this point, if no session ID was found, we generate a new session
@@ -78,124 +267,115 @@ public class HttpHandler implements Runnable {
             this.sessionID = UUID.randomUUID().toString();
 
             // Create a new entry in the sessions mapping
-            SessionData sessionData = new SessionData(generateSecretWord());
-            WordleServer.addSession(this.sessionID, sessionData);
-            System.out.println("New session added to mapping:" + this.sessionID);
+            this.session = WordleServer.addSession(this.sessionID, new SessionData(generateSecretWord()));
+            if (Log.isDebugEnabled()) Log.debug("New session added to mapping: " + this.sessionID);
         }
 
         // Retrieve guess for POST and Check validity
-        if (this.method.equals("POST")) {
-            this.guess = getBody(reader).split("=")[1].toLowerCase();
+        if (this.method == HttpMethod.POST) {
+            String body = getBody();
+            if (body == null) {
+                // The connection broke or was too slow while the body was being read
+                if (this.timedOut) sendErrorResponse(out, 408);
+                this.keepAlive = false;
+                return;
+            }
+            this.guess = body.substring(body.indexOf('=') + 1).toLowerCase();
+            this.bodyPending = false;
             if (!isGuessValid(this.guess)) {
                 // Generate the full game state
-                String fullGameState = WordleServer.getFullGameState(this.sessionID);
+                String fullGameState = this.session.getFullGameState();
 
                 // Generate the HTML page with the error message
-                HTML htmlGenerator = new HTML();
                 String errorMessage = "Word does not exist. Try another.";
-                String response = htmlGenerator.generateWordlePage(fullGameState, errorMessage);
-                sendHttpResponse(writer, 200, "text/html", response);
+                sendWordlePage(out, fullGameState, errorMessage);
                 return;
             }
-            System.out.println("Guess: " + this.guess);
+            if (Log.isDebugEnabled()) Log.debug("Guess: " + this.guess);
         }
 
         // Check if the game is over
-        int currAttempt = WordleServer.getSessionData(this.sessionID).getAttempt();
-        System.out.println("DEBUG_currAttempt: " + currAttempt);
+        int currAttempt = this.session.getAttempt();
+        if (Log.isDebugEnabled()) Log.debug("Current attempt: " + currAttempt);
         if (currAttempt > WordleServer.getMaxAttempts()) {
-            WordleServer.getSessionData(this.sessionID).setStatus("Gameover");
-            String response = "{\"Status\": \"Gameover\", \"Message\":\"" + WordleServer.getSecretWord(this.sessionID) +"\"}";
-            sendHttpResponse(writer, 200, "application/json", response);
+            this.session.setStatus("Gameover");
+            this.sessionChanged = true;
+            String response = "{\"Status\": \"Gameover\", \"Message\":\"" + this.session.getSecretWord() +"\"}";
+            sendHttpResponse(out, 200, "application/json", response);
             return;
         };
 
+        if (isRequestHint) {
+            sendHint(out);
+            return;
+        }
+
         // Check if JavaScript is enabled && if the request is a guess
         // Else it is either a page reload (even with JS enabled) or JS is disabled (POST request)
-        if (isJavaScriptEnabled && isRequestGuess) { pleaseRespond(writer, currAttempt, true); }
-        else { pleaseRespond(writer, currAttempt, false); }    
+        if (isJavaScriptEnabled && isRequestGuess) { pleaseRespond(out, currAttempt, true); }
+        else { pleaseRespond(out, currAttempt, false); }    
     }
 
     /**
      * Checks the format of the HTTP request and headers.
      * 
-     * @param requestLine the HTTP request line
-     * @param reader the BufferedReader to read the headers from
-     * @param writer the PrintWriter to send error responses to
+     * @param out the buffer the response is appended to
      * @return true if the format is valid, false otherwise
      */
-    private boolean formatCheck(String requestLine, BufferedReader reader, PrintWriter writer) {
-        // Validate the HTTP request line
-        if (!requestLineCheck(requestLine, reader, writer)) return false;
+    private boolean formatCheck(ResponseBuffer out) {
+        // A body we may not read must not be mistaken for the next request
+        this.bodyPending = parser.hasContentLength() || parser.isChunked();
+        // HTTP/1.1 connections are persistent unless the client asks to close, whatever the response
+        if (parser.isConnectionClose()) this.keepAlive = false;
+        else if (parser.isConnectionKeepAlive()) this.keepAliveRequest = true;
 
-        // Read and validate the HTTP headers
-        String line;
-        try {
-            // Retrieve headers
-            while ((line = reader.readLine()) != null && !line.isEmpty()) {
-                // Invalid header format
-                if (!line.matches("^[^:]+: .*$")) {
-                    System.err.println(line + " :: Invalid header format");
-                    sendErrorResponse(writer, 400);
-                    return false;
-                } 
-                // Extract the header name and value
-                else {
-                    String[] header = line.split(": ", 2);
-                    headers.put(header[0], header[1]);
-                }
-            }
+        // Validate the HTTP request line
+        if (!requestLineCheck(out)) return false;
 
-            return headersCheck(writer);
-        } catch (IOException e) { 
-            e.printStackTrace(); 
+        // Validate the HTTP headers
+        if (parser.hasInvalidHeader()) {
+            Log.warn(parser.getInvalidHeader() + " :: Invalid header format");
+            sendErrorResponse(out, 400);
             return false;
         }
+        return headersCheck(out);
     }
 
     /**
      * Checks the validity of the request line in an HTTP request.
      * 
-     * @param requestLine the request line to be checked
-     * @param reader the BufferedReader used to read the request
-     * @param writer the PrintWriter used to send responses
+     * @param out the buffer the response is appended to
      * @return true if the request line is valid, false otherwise
      */
-    public boolean requestLineCheck(String requestLine, BufferedReader reader, PrintWriter writer) {
-        if (requestLine == null || !requestLine.matches("^[A-Z]+ .* HTTP/1\\.1$")) {
+    public boolean requestLineCheck(ResponseBuffer out) {
+        if (!parser.isRequestLineValid()) {
             // Invalid request format
-            System.err.println(requestLine + " ::Invalid request format");
-            sendErrorResponse(writer, 400);
+            Log.warn(parser.getRequestLine() + " ::Invalid request format");
+            sendErrorResponse(out, 400);
             return false;
         }
-        else {
-            // Extract the request method, URI and HTTP version
-            String[] request = requestLine.split(" ", 3);
-            String method = request[0];
-            String uri = request[1];
-            String version = request[2];
-
-            // Check if the HTTP method is allowed
-            if (!isMethodAllowed(method)) {
-                System.err.println(method + " ::Invalid HTTP method");
-                sendErrorResponse(writer, 405);
-                return false;
-            } 
-            if (!(method.equals("GET") || method.equals("HEAD") || method.equals("POST"))) {
-                System.err.println(method + " ::Unimplemented HTTP method");
-                sendErrorResponse(writer, 501);
-                return false;
-            }
-            
-            // Check if the URI is valid
-            if (!isURIValid(uri, writer, reader)) return false;
 
-            // Check if the HTTP version is supported
-            if (!version.equals("HTTP/1.1")) {
-                System.err.println(version + " ::Invalid HTTP version");
-                sendErrorResponse(writer, 505);
-                return false;
-            }
+        // Check if the HTTP method is allowed
+        HttpMethod method = parser.getMethod();
+        if (!isMethodAllowed(method)) {
+            Log.warn(parser.getMethodName() + " ::Invalid HTTP method");
+            sendErrorResponse(out, 405);
+            return false;
+        } 
+        if (!(method == HttpMethod.GET || method == HttpMethod.HEAD || method == HttpMethod.POST)) {
+            Log.warn(method + " ::Unimplemented HTTP method");
+            sendErrorResponse(out, 501);
+            return false;
+        }
+        
+        // Check if the URI is valid
+        if (!isURIValid(out)) return false;
+
+        // Check if the HTTP version is supported
+        if (!parser.isVersionValid()) {
+            Log.warn(parser.getVersion() + " ::Invalid HTTP version");
+            sendErrorResponse(out, 505);
+            return false;
         }
         return true;
     }
@@ -203,94 +383,91 @@ public class HttpHandler implements Runnable {
     /**
      * Checks the headers of the HTTP request and performs necessary validations.
      * 
-     * @param writer The PrintWriter object used to send responses.
+     * @param out the buffer the response is appended to
      * @return true if the headers are valid, false otherwise.
      */
-    public boolean headersCheck(PrintWriter writer) {
+    public boolean headersCheck(ResponseBuffer out) {
         // Retrieve content length
-        if (!headers.containsKey("Content-Length") && !this.method.equals("GET") && !this.method.equals("HEAD")) {
+        if (!parser.hasContentLength() && this.method != HttpMethod.GET && this.method != HttpMethod.HEAD) {
             // Content-Length header not found
-            System.err.println(method + " ::Content-Length header not found");
-            sendErrorResponse(writer, 411);
+            Log.warn(method + " ::Content-Length header not found");
+            sendErrorResponse(out, 411);
             return false;
         } 
-        else if (headers.containsKey("Content-Length")) {
-            int length = Integer.parseInt(headers.get("Content-Length"));
-            this.buffer = new char[length];
+        else if (parser.hasContentLength()) {
+            if (!parser.isContentLengthValid()) {
+                Log.warn(method + " ::Invalid Content-Length");
+                sendErrorResponse(out, 400);
+                return false;
+            }
+            this.contentLength = parser.getContentLength();
         }
         
         // Check if the request is chunked
-        if (headers.containsKey("Transfer-Encoding") && headers.get("Transfer-Encoding").contains("chunked"))
-            this.isChunked = true;
-        // Ensure connection closes
-        if (headers.containsKey("Connection") && headers.get("Connection").equals("keep-alive"))
-            this.keepAliveRequest = true;
+        if (parser.isChunked()) this.isChunked = true;
 
         // Process headers in search of existing session
-        if (headers.containsKey("Cookie")) {
+        if (parser.hasCookie()) {
             // Extract the session ID from the Cookie header
-            String[] session = headers.get("Cookie").split("=", 2);
-            this.sessionID = session[1];
-            System.out.println("User id: " + sessionID);
-            if (WordleServer.hasSession(sessionID)) WordleServer.printSESSION(sessionID);
+            this.sessionID = parser.getSessionId();
+            if (Log.isDebugEnabled()) WordleServer.printSESSION(sessionID);
 
             // Check if the session ID is valid
-            if (!sessionID.matches("^[0-9a-f\\-]+$")) {
+            if (!parser.isSessionIdValid()) {
                 // Invalid session ID
-                System.err.println(sessionID + " ::Invalid session ID");
-                sendErrorResponse(writer, 400);
+                Log.warn(sessionID + " ::Invalid session ID");
+                sendErrorResponse(out, 400);
                 return false;
             } 
+            // Resolved once: the rest of the request works on this session even if the store drops it
+            this.session = WordleServer.getSessionData(this.sessionID);
             // If sessionID exists on client but not on server, make as if new session (will override the cookie on browser)
-            else if (!WordleServer.hasSession(this.sessionID)) {
+            if (this.session == null) {
                 this.newSession = true;
 
                 // Create a new entry in the sessions mapping
-                SessionData sessionData = new SessionData(generateSecretWord());
-                WordleServer.addSession(this.sessionID, sessionData);
+                this.session = WordleServer.addSession(this.sessionID, new SessionData(generateSecretWord()));
             }
 
             // Check that session has not expired or is not in a winning/gameover state
-            WordleServer.getSessionData(this.sessionID).updateLastActivityTime();
-            boolean isExpired = WordleServer.getSessionData(this.sessionID).isExpired();
-            String status = WordleServer.getSessionData(this.sessionID).getStatus();
+            WordleServer.touchSession(this.sessionID);
+            boolean isExpired = this.session.isExpired();
+            String status = this.session.getStatus();
             if(isExpired || status.equals("Gameover") || status.equals("Win")) {
                 WordleServer.removeSession(this.sessionID);
                 this.sessionID = "";
+                this.session = null;
             }
         }
 
         // Check if JavaScript is enabled
-        if (headers.containsKey("JS-Enabled") && headers.get("JS-Enabled").equals("false"))
-            this.isJavaScriptEnabled = false;
+        if (parser.isJavaScriptDisabled()) this.isJavaScriptEnabled = false;
 
         // Check if the request is an AJAX request
-        if (headers.containsKey("X-Requested-With") && !headers.get("X-Requested-With").equals("XMLHttpRequest")) {
+        if (parser.hasRequestedWith() && !parser.isRequestedWithValid()) {
             // Invalid request format
-            System.err.println("X-Requested-With: " + headers.get("X-Requested-With") + " ::Invalid request format");
-            sendErrorResponse(writer, 400);
+            Log.warn("X-Requested-With: " + parser.getRequestedWith() + " ::Invalid request format");
+            sendErrorResponse(out, 400);
             return false;
         }
 
         // Check if mismatch exists between rowID submitted by browser and current attempt
-        if (headers.containsKey("Row")) {
-            String row = headers.get("Row");
-            try {
-                this.rowID = Integer.parseInt(row);
-                if (rowID != -1 && !sessionID.isEmpty()) {
-                    // Check that the rowID match current attempt
-                    if (rowID != WordleServer.getSessionData(this.sessionID).getAttempt()) {
-                        System.err.println(rowID + " ::Invalid row ID");
-                        sendErrorResponse(writer, 400);
-                        return false;
-                    }
-                } 
-            } 
-            catch (NumberFormatException e) {
-                System.err.println(row + " ::NumberFormatException");
-                sendErrorResponse(writer, 400);
+        if (parser.hasRow()) {
+            if (!parser.isRowValid()) {
+                Log.warn(parser.getRowValue() + " ::NumberFormatException");
+                sendErrorResponse(out, 400);
                 return false;
             }
+
+            this.rowID = parser.getRow();
+            if (rowID != -1 && this.session != null) {
+                // Check that the rowID match current attempt
+                if (rowID != this.session.getAttempt()) {
+                    Log.warn(rowID + " ::Invalid row ID");
+                    sendErrorResponse(out, 400);
+                    return false;
+                }
+            } 
         }
 
         return true;
@@ -303,61 +480,61 @@ public class HttpHandler implements Runnable {
      * If the request type is not for JavaScript and guess, it updates the game state if it is a guess request,
      * checks for winning or game over conditions, and sends the HTML response.
      *
-     * @param writer       the PrintWriter object used to send the HTTP response
+     * @param out          the buffer the response is appended to
      * @param currAttempt  the current attempt number
      * @param isJSandGuess true if the request type is for JavaScript and guess, false otherwise
      */
-    public void pleaseRespond(PrintWriter writer, int currAttempt, boolean isJSandGuess) {
+    public void pleaseRespond(ResponseBuffer out, int currAttempt, boolean isJSandGuess) {
         // Process the request
-        HTML htmlGenerator = new HTML();
         String response;
         
         if(isJSandGuess) {
             // Update game state
-            String colorPattern = responseBuilder(this.guess);
-            WordleServer.addGameState(this.sessionID, this.guess, colorPattern);
+            int feedback = scoreGuess(this.guess);
+            this.sessionChanged = true;
 
             // Retrieve the current game state -> 1:guess:color
-            String currGameState = WordleServer.getCurrGameState(this.sessionID, currAttempt);
+            String currGameState = this.session.getCurrGameState(currAttempt);
 
             // Check if winning state
-            if (colorPattern.equals("GGGGG")) {
-                WordleServer.getSessionData(this.sessionID).setStatus("Win");
+            if (feedback == FeedbackScorer.ALL_GREEN) {
+                this.session.setStatus("Win");
+                this.sessionChanged = true;
                 response = "{\"Status\": \"Win\", \"Message\":\"" + currGameState + "\"}";
-                sendHttpResponse(writer, 200, "application/json", response);
+                sendHttpResponse(out, 200, "application/json", response);
                 return;
             }
 
             // Check if the current attempt is the last attempt
             if (currAttempt == 5) {
-                WordleServer.getSessionData(this.sessionID).setStatus("Gameover");
-                response = "{\"Status\": \"Gameover\", \"Message\":\"" + WordleServer.getSecretWord(this.sessionID) + "\"}";
-                sendHttpResponse(writer, 200, "application/json", response);
+                this.session.setStatus("Gameover");
+                this.sessionChanged = true;
+                response = "{\"Status\": \"Gameover\", \"Message\":\"" + this.session.getSecretWord() + "\"}";
+                sendHttpResponse(out, 200, "application/json", response);
                 return;
             }
 
             response = "{\"Status\": \"Playing\", \"Message\":\"" + currGameState + "\"}";
-            sendHttpResponse(writer, 200, "application/json", response);
+            sendHttpResponse(out, 200, "application/json", response);
         }
         else {
             // Update game state
             if (this.isRequestGuess) {
-                String colorPattern = responseBuilder(this.guess);
-                WordleServer.addGameState(this.sessionID, this.guess, colorPattern);
+                scoreGuess(this.guess);
+                this.sessionChanged = true;
             }
 
             // Retrieve the full game state
             // -1:secret:secret;0:guess:color;1:guess:color;2:guess:color;3:guess:color;4:guess:color;5:guess:color;
-            String fullGameState = WordleServer.getFullGameState(this.sessionID);
-            System.out.println("DEBUG_ID_gamestate: " + fullGameState);
+            String fullGameState = this.session.getFullGameState();
+            if (Log.isDebugEnabled()) Log.debug("Game state: " + fullGameState);
 
             // Check if final state
-            if (fullGameState.contains("GGGGG")) WordleServer.getSessionData(this.sessionID).setStatus("Win");
-            else if (currAttempt == 5) WordleServer.getSessionData(this.sessionID).setStatus("Gameover");
+            if (fullGameState.contains("GGGGG")) this.session.setStatus("Win");
+            else if (currAttempt == 5) this.session.setStatus("Gameover");
             
             // Send the HTTP response
-            response = htmlGenerator.generateWordlePage(fullGameState);
-            sendHttpResponse(writer, 200, "text/html", response);
+            sendWordlePage(out, fullGameState, "");
         }
     }
 
@@ -366,234 +543,338 @@ public class HttpHandler implements Runnable {
     /**
      * Sends an HTTP response to the client.
      *
-     * @param writer      the PrintWriter object used to write the response to the client
+     * @param out         the buffer the response is appended to
      * @param statusCode  the status code of the response
      * @param contentType the content type of the response
      * @param content     the content of the response
      */
-    private void sendHttpResponse(PrintWriter writer, int statusCode, String contentType, String content) {
-        // Check if the content should be chunked and get status message
-        boolean toChunk = content.length() > WordleServer.getMaxChunckSize();
-        String statusMessage = getStatusMessage(statusCode);
+    private void sendHttpResponse(ResponseBuffer out, int statusCode, String contentType, String content) {
+        // The headers are written once the size of the body is known
+        int headers = out.reserve();
+        int body = out.size();
+        out.append(content);
+        finishHttpResponse(out, headers, body, statusCode, contentType);
+        if (Log.isDebugEnabled()) Log.debug("Response body: " + content);
+    }
+
+    /**
+     * Sends the Wordle page to the client.
+     * The page is rendered from its template straight into the response, without building a String.
+     *
+     * @param out          the buffer the response is appended to
+     * @param gameState    the full game state
+     * @param errorMessage an optional error message to display on the page
+     */
+    private void sendWordlePage(ResponseBuffer out, String gameState, String errorMessage) {
+        int headers = out.reserve();
+        int body = out.size();
+        new HTML().writeWordlePage(out, gameState, errorMessage);
+        finishHttpResponse(out, headers, body, 200, "text/html");
+    }
 
-        // Get content-length in bytes
-        byte[] contentBytes = content.getBytes(StandardCharsets.UTF_8);
-        int contentLength = contentBytes.length;
+    /**
+     * Sends the metrics of the server, in the text format of Prometheus.
+     *
+     * @param out the buffer the response is appended to
+     */
+    private void sendMetrics(ResponseBuffer out) {
+        int headers = out.reserve();
+        int body = out.size();
+        out.append(Metrics.scrape());
+        finishHttpResponse(out, headers, body, 200, Metrics.CONTENT_TYPE);
+    }
+
+    /**
+     * Sends a static asset to the client, or 304 Not Modified if the client already holds it.
+     * The content is shared by all the responses: it is referenced by the response, not copied,
+     * and as its length is known it is sent whole rather than in chunks.
+     * Assets are linked with their version, so they can be cached without ever being revalidated.
+     *
+     * @param out   the buffer the response is appended to
+     * @param asset the asset requested
+     */
+    private void sendStaticAsset(ResponseBuffer out, StaticAsset asset) {
+        if (this.bodyPending) this.keepAlive = false;
+
+        // Precompressed representations are picked as they are
+        ResponseCompressor.Encoding encoding = asset.negotiate(parser.acceptsGzip(), parser.acceptsDeflate());
+        byte[] content = asset.getContent(encoding);
 
-        // Prepare the HTTP response headers
         Map<String, String> responseHeaders = new HashMap<>();
-        responseHeaders.put("Content-Type", contentType);
-        if (toChunk) responseHeaders.put("Transfer-Encoding", "chunked");
-        else responseHeaders.put("Content-Length", String.valueOf(contentLength));
-        if (this.newSession) responseHeaders.put("Set-Cookie", "SESSID=" + this.sessionID + "; path=/; Max-Age=600");
-        if(this.keepAliveRequest) responseHeaders.put("Connection", "close");
+        responseHeaders.put("ETag", asset.getETag(encoding));
+        responseHeaders.put("Cache-Control", "public, max-age=31536000, immutable");
+        if (asset.isCompressed()) responseHeaders.put("Vary", "Accept-Encoding");
+        putConnectionHeaders(responseHeaders);
         responseHeaders.put("Date", new Date().toString());
         responseHeaders.put("Server", String.valueOf(this.serverID));
 
-        // Send the HTTP response
-        writer.println("HTTP/1.1 " + statusCode + " " + statusMessage);
-        System.out.println("HTTP/1.1 " + statusCode + " " + statusMessage);
-        for (Map.Entry<String, String> header : responseHeaders.entrySet()) {
-            writer.println(header.getKey() + ": " + header.getValue());
-            System.out.println(header.getKey() + ": " + header.getValue());
+        // A 304 response has no body, hence no Content-Length
+        if (parser.matchesIfNoneMatch(asset.getETagBytes(encoding))) {
+            appendHead(out, 304, responseHeaders);
+            return;
         }
 
-        writer.println();
-        System.out.println();
+        responseHeaders.put("Content-Type", asset.getContentType());
+        if (encoding != ResponseCompressor.Encoding.IDENTITY) responseHeaders.put("Content-Encoding", encoding.getToken());
+        responseHeaders.put("Content-Length", String.valueOf(content.length));
+        appendHead(out, 200, responseHeaders);
+        if (this.method != HttpMethod.HEAD) out.add(content);
+    }
 
-        if (toChunk) sendContentInChunks(writer, content);
-        else {
-            writer.println(content);
-            System.out.println(content);
-            writer.flush();
-        }
+    /**
+     * Appends the status line and the headers of a response, followed by the blank line.
+     *
+     * @param out             the buffer the response is appended to
+     * @param statusCode      the status code of the response
+     * @param responseHeaders the headers of the response
+     */
+    private void appendHead(ResponseBuffer out, int statusCode, Map<String, String> responseHeaders) {
+        Metrics.countResponse(statusCode);
+        out.append("HTTP/1.1 " + statusCode + " " + getStatusMessage(statusCode) + CRLF);
+        for (Map.Entry<String, String> header : responseHeaders.entrySet())
+            out.append(header.getKey() + ": " + header.getValue() + CRLF);
+        out.append(CRLF);
     }
 
     /**
-     * Sends the content in chunks to the PrintWriter.
-     * Each chunk is of size determined by WordleServer.getMaxChunckSize().
-     * 
-     * @param writer  the PrintWriter to send the content to
-     * @param content the content to be sent in chunks
+     * Writes the headers of a response whose body is already in the buffer.
+     * The body is compressed when the client accepts it and it is large enough,
+     * then framed in chunks when it is larger than WordleServer.getMaxChunckSize().
+     * For a HEAD request, the body is dropped once the headers describe it.
+     *
+     * @param out         the buffer the response is appended to
+     * @param headers     the segment reserved for the headers
+     * @param body        the mark of the first segment of the body
+     * @param statusCode  the status code of the response
+     * @param contentType the content type of the response
      */
-    private void sendContentInChunks(PrintWriter writer, String content) {
-        int chunkSize = WordleServer.getMaxChunckSize();
+    private void finishHttpResponse(ResponseBuffer out, int headers, int body, int statusCode, String contentType) {
+        Map<String, String> responseHeaders = new HashMap<>();
 
-        byte[] contentBytes = content.getBytes(StandardCharsets.UTF_8);
+        // Compress first: chunks carry the compressed bytes
+        int contentLength = out.length(body);
+        if (ResponseCompressor.isWorthCompressing(contentLength)) {
+            responseHeaders.put("Vary", "Accept-Encoding");
+            ResponseCompressor.Encoding encoding = ResponseCompressor.negotiate(parser.acceptsGzip(), parser.acceptsDeflate());
+            if (encoding != ResponseCompressor.Encoding.IDENTITY) {
+                ResponseCompressor.compress(out, body, encoding);
+                responseHeaders.put("Content-Encoding", encoding.getToken());
+                contentLength = out.length(body);
+            }
+        }
 
-        for (int i = 0; i < contentBytes.length; i += chunkSize) {
-            int end = Math.min(i + chunkSize, contentBytes.length);
-            byte[] chunkBytes = Arrays.copyOfRange(contentBytes, i, end);
+        // Check if the content should be chunked and get status message
+        boolean toChunk = contentLength > WordleServer.getMaxChunckSize();
+        String statusMessage = getStatusMessage(statusCode);
 
-            // Convert chunkBytes back to a string for printing
-            String chunk = new String(chunkBytes, StandardCharsets.UTF_8);
+        // An unread request body would be taken for the next request
+        if (this.bodyPending) this.keepAlive = false;
 
-            System.out.println(Integer.toHexString(chunkBytes.length));
-            System.out.println(chunk);
-            writer.println(Integer.toHexString(chunkBytes.length));
-            writer.println(chunk);
-            writer.flush();
-        }
+        // Prepare the HTTP response headers
+        responseHeaders.put("Content-Type", contentType);
+        if (toChunk) responseHeaders.put("Transfer-Encoding", "chunked");
+        else responseHeaders.put("Content-Length", String.valueOf(contentLength));
+        if (this.newSession) responseHeaders.put("Set-Cookie", "SESSID=" + this.sessionID + "; path=/; Max-Age=600");
+        putConnectionHeaders(responseHeaders);
+        responseHeaders.put("Date", new Date().toString());
+        responseHeaders.put("Server", String.valueOf(this.serverID));
 
-        // Send a zero-size chunk to indicate the end of the content
-        System.out.println("0\r\n");
-        writer.println("0");
-        writer.println();
-        writer.flush();
+        StringBuilder head = new StringBuilder();
+        head.append("HTTP/1.1 ").append(statusCode).append(' ').append(statusMessage).append(CRLF);
+        for (Map.Entry<String, String> header : responseHeaders.entrySet())
+            head.append(header.getKey()).append(": ").append(header.getValue()).append(CRLF);
+        head.append(CRLF);
+        if (Log.isDebugEnabled()) Log.debug("Response head: " + head);
+        Metrics.countResponse(statusCode);
+
+        // Chunks are slices of the body segments: nothing is copied
+        if (toChunk) out.chunk(body, WordleServer.getMaxChunckSize());
+        out.fill(headers, head.toString());
+        // A response to HEAD has the headers of the response to GET, but no body
+        if (this.method == HttpMethod.HEAD) out.truncate(body);
     }
 
     /**
      * Sends an error response to the client.
+     * Client and server errors close the connection, as the rest of the request may not have been read.
      * 
-     * @param writer     the PrintWriter object used to write the response
+     * @param out        the buffer the response is appended to
      * @param statusCode the HTTP status code of the error response
      */
-    private void sendErrorResponse(PrintWriter writer, int statusCode) {
+    private void sendErrorResponse(ResponseBuffer out, int statusCode) {
+        Metrics.countResponse(statusCode);
         String statusMessage = getStatusMessage(statusCode);
+        if (statusCode >= 400 || this.bodyPending) this.keepAlive = false;
 
-        writer.println("HTTP/1.1 " + statusCode + " " + statusMessage);
-        writer.println("Content-Type: text/plain");
-        writer.println("Content-Length: 0");
-        if (statusCode == 303) writer.println("Location: http://localhost:8008/play.html");
-        // writer.println();
-        // writer.println(error);
-        writer.flush();
+        Map<String, String> responseHeaders = new HashMap<>();
+        putConnectionHeaders(responseHeaders);
+
+        out.append("HTTP/1.1 " + statusCode + " " + statusMessage + CRLF);
+        out.append("Content-Type: text/plain" + CRLF);
+        out.append("Content-Length: 0" + CRLF);
+        if (statusCode == 303) out.append("Location: http://localhost:8008/play.html" + CRLF);
+        for (Map.Entry<String, String> header : responseHeaders.entrySet())
+            out.append(header.getKey() + ": " + header.getValue() + CRLF);
+        out.append(CRLF);
+    }
+
+    /**
+     * Adds the headers telling the client whether the connection stays open after this response.
+     *
+     * @param responseHeaders the response headers to complete
+     */
+    private void putConnectionHeaders(Map<String, String> responseHeaders) {
+        if (this.keepAlive) {
+            if (this.keepAliveRequest) responseHeaders.put("Connection", "keep-alive");
+            int remaining = WordleServer.getMaxKeepAliveRequests() - this.requestCount;
+            responseHeaders.put("Keep-Alive", "timeout=" + (WordleServer.getKeepAliveTimeout() / 1000) + ", max=" + remaining);
+        }
+        else responseHeaders.put("Connection", "close");
     }
 
     /**
      * Checks if the specified HTTP method is allowed.
      * If the method is "POST", disables JavaScript.
      * 
-     * @param method the HTTP method to check
+     * @param method the HTTP method to check, null if the parser did not recognize it
      * @return true if the method is allowed, false otherwise
      */
-    private boolean isMethodAllowed(String method) {
+    private boolean isMethodAllowed(HttpMethod method) {
         this.method = method;
-        if (this.method.equals("POST")) this.isJavaScriptEnabled = false;
-        return HttpMethod.isMethodAllowed(method); 
+        if (this.method == HttpMethod.POST) this.isJavaScriptEnabled = false;
+        return method != null; 
     }
 
     /**
-     * Checks if the given URI is valid and handles different types of requests.
+     * Checks if the requested URI is valid and handles different types of requests.
      * 
-     * @param uri The URI to be validated.
-     * @param writer The PrintWriter object used for writing responses.
-     * @param reader The BufferedReader object used for reading requests.
+     * @param out the buffer the response is appended to
      * @return true if the URI is valid and the request can proceed, false otherwise.
      */
-    private boolean isURIValid(String uri, PrintWriter writer, BufferedReader reader) {
-        // Call for root page
-        if(uri.matches("^/$")) {
-            System.out.println(uri + " ::Call for root page. Redirecting to /play.html");
-            sendErrorResponse(writer, 303); // Redirect to /play.html
-            return true;
-        }
-        else if (uri.matches("^/play\\.html$")) return true;
-        // Call for guess via GET
-        else if (uri.matches("^/play\\.html/guess\\?word=[A-Z]{5}$") && this.method.equals("GET")) {
-            this.isRequestGuess = true;
-            this.guess = uri.split("=")[1].toLowerCase();
-
-            if (!isGuessValid(this.guess)) {
-                String response = "{\"Status\": \"Invalid\", \"Message\": \"Word does not exist. Try another.\"}";
-                sendHttpResponse(writer, 200, "application/json", response);
-                if (!this.sessionID.isEmpty() && WordleServer.hasSession(sessionID))
-                    WordleServer.getSessionData(this.sessionID).decrementAttempts();
+    private boolean isURIValid(ResponseBuffer out) {
+        switch (parser.getRoute()) {
+            // Call for root page
+            case ROOT:
+                Log.info(parser.getUri() + " ::Call for root page. Redirecting to /play.html");
+                sendErrorResponse(out, 303); // Redirect to /play.html
                 return false;
-            }
-            return true;
-        }
-        // Call for guess via POST
-        else if (uri.matches("^/play\\.html/guess$") && this.method.equals("POST")) {
-            this.isRequestGuess = true;
-            return true;
-        }
-        // Call for favicon
-        else if (uri.matches("^/favicon.ico$")) {
-            sendErrorResponse(writer, 204);
-            return false;
-        }
-        // Call for game restart
-        else if (uri.matches("^/play\\.html/restart$|^/restart$")) {
-            System.out.println(uri + " ::Call for game restart");
-            WordleServer.removeSession(this.sessionID);
-            this.sessionID = "";
-            sendErrorResponse(writer, 303);
-            return false;
+            case PLAY:
+                return true;
+            // Call for guess via GET
+            case GUESS_WORD:
+                if (this.method != HttpMethod.GET) break;
+                this.isRequestGuess = true;
+
+                // Checked from the request bytes: the String of the guess is only created for a valid word
+                if (!WordDictionary.contains(parser.getPackedGuessWord())) {
+                    String response = "{\"Status\": \"Invalid\", \"Message\": \"Word does not exist. Try another.\"}";
+                    sendHttpResponse(out, 200, "application/json", response);
+                    if (this.session != null) {
+                        this.session.decrementAttempts();
+                        this.sessionChanged = true;
+                    }
+                    return false;
+                }
+                this.guess = parser.getGuessWord();
+                return true;
+            // Call for a hint, answered once the session is known
+            case HINT:
+                if (this.method != HttpMethod.GET) break;
+                this.isRequestHint = true;
+                return true;
+            // Call for the metrics of the server
+            case METRICS:
+                if (this.method == HttpMethod.POST) break;
+                sendMetrics(out);
+                return false;
+            // Call for guess via POST
+            case GUESS:
+                if (this.method != HttpMethod.POST) break;
+                this.isRequestGuess = true;
+                return true;
+            // Call for the script, the styles or the logo, linked by the page
+            case SCRIPT:
+                if (this.method == HttpMethod.POST) break;
+                sendStaticAsset(out, HTML.getScript());
+                return false;
+            case STYLES:
+                if (this.method == HttpMethod.POST) break;
+                sendStaticAsset(out, HTML.getStyles());
+                return false;
+            case LOGO:
+                if (this.method == HttpMethod.POST) break;
+                sendStaticAsset(out, AssetCache.getLogo());
+                return false;
+            // Call for favicon
+            case FAVICON:
+                sendErrorResponse(out, 204);
+                return false;
+            // Call for game restart
+            case RESTART:
+                Log.info(parser.getUri() + " ::Call for game restart");
+                WordleServer.removeSession(this.sessionID);
+                this.sessionID = "";
+                this.session = null;
+                sendErrorResponse(out, 303);
+                return false;
+            default:
+                break;
         }
 
         // Invalid URI
-        sendErrorResponse(writer, 404);
+        sendErrorResponse(out, 404);
         return false;
     }
  
     /**
      * Checks if a given guess is valid.
-     * A valid guess must have a length of 5 and be present in the WordleWordSet.
+     * A valid guess must be five letters long and be present in the dictionary.
      *
      * @param guess the guess to be validated
      * @return true if the guess is valid, false otherwise
      */
-    private boolean isGuessValid(String guess) { return guess.length() == 5 && WordleWordSet.WORD_SET.contains(guess); }
+    private boolean isGuessValid(String guess) { return WordDictionary.contains(guess); }
 
     /**
-     * Generates a secret word by randomly selecting a word from the word list.
+     * Generates a secret word by randomly selecting a word from the pool of secret words.
      *
      * @return The generated secret word.
      */
-    private static String generateSecretWord() {
-        ArrayList<String> wordList = new ArrayList<String>(WordleWordSet.WORD_SET);
-        Random random = new Random();
-        int index = random.nextInt(wordList.size());
-        return wordList.get(index);
-    }
+    private static String generateSecretWord() { return WordDictionary.randomSecret(); }
 
     /**
-     * Builds a response string based on the provided guess.
-     * The response string consists of characters representing the correctness of each letter in the guess.
-     * The characters can be 'G' for a well-placed letter, 'Y' for a misplaced letter, or 'B' for an incorrect letter.
+     * Sends the best next guess of the session, ranked within the hint budget.
      *
-     * @param guess the guess string to evaluate
-     * @return the response string indicating the correctness of each letter in the guess
-     */
-    private String responseBuilder(String guess) {
-        if (guess == null) return null;
-
-        // Initialise response and tracking arrays
-        char[] pattern = new char[5];
-        boolean[] usedInGuess = new boolean[5];
-        boolean[] usedInSecret = new boolean[5];
-
-        String _secret = WordleServer.getSecretWord(this.sessionID).toLowerCase();
-        String _guess = guess.toLowerCase();
-    
-        // GREEN: Mark well-placed letters
-        for (int i = 0; i < 5; i++) {
-            if (_guess.charAt(i) == _secret.charAt(i)) {
-                pattern[i] = 'G';
-                usedInGuess[i] = usedInSecret[i] = true;
-            }
-        }
-    
-        // YELLOW: Mark misplaced letters
-        for (int i = 0; i < 5; i++) {
-            if (!usedInGuess[i]) {
-                for (int j = 0; j < 5; j++) {
-                    if (!usedInSecret[j] && _guess.charAt(i) == _secret.charAt(j)) {
-                        pattern[i] = 'Y';
-                        usedInGuess[i] = usedInSecret[j] = true;
-                        break;
-                    }
-                }
-            }
+     * @param out the buffer the response is appended to
+     */
+    private void sendHint(ResponseBuffer out) {
+        long start = System.nanoTime();
+        HintEngine.Hint hint = HintEngine.suggest(this.session, WordleServer.getHintBudget() * 1_000_000L);
+        Metrics.recordHintTime(System.nanoTime() - start);
+        if (hint == null) {
+            sendHttpResponse(out, 200, "application/json", "{\"Status\": \"Invalid\", \"Message\": \"No word fits the game.\"}");
+            return;
         }
-    
-        // BLACK: Mark incorrect letters
-        for (int i = 0; i < 5; i++)
-            if (!usedInGuess[i]) { pattern[i] = 'B'; }
+        Log.info("Hint: " + hint.getWord() + " among " + hint.getCandidates() + " candidates, "
+                + hint.getRanked() + " guesses ranked in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+        String response = "{\"Status\": \"Hint\", \"Message\":\"" + hint.getWord() + "\", \"Candidates\": " + hint.getCandidates()
+                + ", \"Bits\": " + String.format(Locale.ROOT, "%.2f", hint.getBits()) + ", \"Complete\": " + hint.isComplete() + "}";
+        sendHttpResponse(out, 200, "application/json", response);
+    }
 
-        String response = new String(pattern);
-        return response;
+    /**
+     * Scores a guess against the secret word of the session and records it in the game state.
+     * The colours stay packed: the "GYBBG" pattern is only written out with the game state.
+     *
+     * @param guess the guess, a valid word
+     * @return the feedback, see FeedbackScorer
+     */
+    private int scoreGuess(String guess) {
+        int packedGuess = PackedWord.encode(guess);
+        int feedback = FeedbackScorer.score(this.session.getSecret(), packedGuess);
+        this.session.addGameState(packedGuess, FeedbackScorer.toColours(feedback));
+        return feedback;
     }
 
     /**
@@ -607,10 +888,15 @@ public class HttpHandler implements Runnable {
             case 200: return "OK";
             case 204: return "No Content";
             case 303: return "See Other";
+            case 304: return "Not Modified";
             case 400: return "Bad Request";
             case 404: return "Not Found";
             case 405: return "Method Not Allowed";
+            case 408: return "Request Timeout";
             case 411: return "Length Required";
+            case 414: return "URI Too Long";
+            case 431: return "Request Header Fields Too Large";
+            case 500: return "Internal Server Error";
             case 501: return "Not Implemented";
             case 505: return "HTTP Version Not Supported";
             default: return "Unknown Status";
@@ -618,62 +904,151 @@ public class HttpHandler implements Runnable {
     }
 
     /**
-     * Reads the body of the HTTP request from the provided BufferedReader and returns it as a String.
+     * Reads the body of the HTTP request and returns it as a String.
      *
-     * @param reader the BufferedReader used to read the request body
-     * @return the body of the HTTP request as a String
+     * @return the body of the HTTP request as a String, or null if it could not be read
      */
-    private String getBody(BufferedReader reader) {
+    private String getBody() {
         try {
             // Check if the request is chunked
-            if (this.isChunked) { return getChunkedBody(reader); }
+            if (this.isChunked) { return getChunkedBody(); }
 
             // If not chunked, read the body based on Content-Length
-            int bytesRead = 0;
-            while (bytesRead < this.buffer.length) {
-                int result = reader.read(buffer, bytesRead, this.buffer.length - bytesRead);
-                if (result == -1) break;
-                bytesRead += result;
-            }
-            return new String(buffer, 0, bytesRead);
+            if (!require(this.contentLength)) return null;
+            String body = new String(in, inPos, this.contentLength, StandardCharsets.UTF_8);
+            inPos += this.contentLength;
+            return body;
+        } catch (SocketTimeoutException e) {
+            Log.warn("Request body not received in time");
+            this.timedOut = true;
+            return null;
         } catch (IOException e) {
-            e.printStackTrace();
+            Log.error("Could not read the request body", e);
             return null;
         }
     }
 
     /**
-     * Reads the chunked body from the provided BufferedReader and returns it as a String.
+     * Reads the chunked body of the HTTP request and returns it as a String.
      *
-     * @param reader the BufferedReader to read the chunked body from
-     * @return the chunked body as a String
+     * @return the chunked body as a String, or null if it could not be read
+     * @throws IOException if reading from the connection fails
      */
-    private String getChunkedBody(BufferedReader reader) {
-        try {
-            StringBuilder bodyBuilder = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // Parse the chunk size
-                int chunkSize = Integer.parseInt(line.trim(), 16); // Chunk sizes are in hex
-                if (chunkSize == 0) break;
-
-                // Read the chunk data
-                char[] buffer = new char[chunkSize];
-                int bytesRead = 0;
-                while (bytesRead < chunkSize) {
-                    int result = reader.read(buffer, bytesRead, chunkSize - bytesRead);
-                    if (result == -1) break;
-                    bytesRead += result;
+    private String getChunkedBody() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        while (true) {
+            // Parse the chunk size
+            int eol = requireLine();
+            if (eol == -1) return null;
+            int chunkSize = 0;
+            for (int i = inPos; i < eol; i++) {
+                int digit = Character.digit(in[i], 16); // Chunk sizes are in hex
+                if (digit == -1) break;
+                chunkSize = (chunkSize << 4) + digit;
+                if (chunkSize > WordleServer.getMaxRequestSize()) return null;
+            }
+            inPos = eol + 1;
+
+            if (chunkSize == 0) {
+                // Skip the trailer up to the empty line ending the body
+                while ((eol = requireLine()) != -1) {
+                    boolean empty = eol == inPos || (eol == inPos + 1 && in[inPos] == '\r');
+                    inPos = eol + 1;
+                    if (empty) break;
                 }
-                bodyBuilder.append(buffer, 0, bytesRead);
+                return body.toString(StandardCharsets.UTF_8.name());
+            }
+
+            // Read the chunk data
+            if (!require(chunkSize)) return null;
+            body.write(in, inPos, chunkSize);
+            inPos += chunkSize;
+
+            // Skip the newline after the chunk
+            if ((eol = requireLine()) == -1) return null;
+            inPos = eol + 1;
+        }
+    }
+
 
-                // Skip the newline after the chunk
-                reader.readLine();
+    // INPUT BUFFER METHODS ------------------------------------------------------------
+    /**
+     * Reads more bytes from the connection into the input buffer.
+     * The buffer is compacted, then grown up to the maximum request size, when it is full.
+     *
+     * @return true if bytes were read, false on end of stream or if the buffer cannot grow
+     * @throws IOException if reading from the connection fails
+     */
+    private boolean fill() throws IOException {
+        if (input == null) return false;
+        if (inLimit == in.length) {
+            if (inPos > 0) {
+                System.arraycopy(in, inPos, in, 0, inLimit - inPos);
+                inLimit -= inPos;
+                inPos = 0;
             }
-            return bodyBuilder.toString();
-        } catch (IOException e) {
-            e.printStackTrace();
-            return null;
+            else if (in.length < WordleServer.getMaxRequestSize())
+                in = Arrays.copyOf(in, Math.min(in.length * 2, WordleServer.getMaxRequestSize()));
+            else return false;
+        }
+
+        if (clientSocket != null) setReadTimeout();
+        int read = input.read(in, inLimit, in.length - inLimit);
+        if (read == -1) return false;
+        if (requestDeadline == 0) requestDeadline = System.nanoTime() + WordleServer.getRequestTimeout() * 1_000_000L;
+        inLimit += read;
+        return true;
+    }
+
+    /**
+     * Bounds the next read of the socket: by IDLE_CHECK_INTERVAL while waiting for a request, so that
+     * handle() checks every so often whether it keeps waiting, by the read timeout and what is left
+     * before the request deadline once the request started, so that a client sending its request
+     * byte by byte cannot hold the thread.
+     *
+     * @throws SocketTimeoutException if the request deadline has passed
+     */
+    private void setReadTimeout() throws IOException {
+        int timeout = Math.min(WordleServer.getKeepAliveTimeout(), IDLE_CHECK_INTERVAL);
+        if (requestDeadline != 0) {
+            long left = (requestDeadline - System.nanoTime()) / 1_000_000;
+            if (left <= 0) throw new SocketTimeoutException("Request deadline passed");
+            timeout = (int) Math.min(WordleServer.getReadTimeout(), left);
+        }
+        if (timeout != soTimeout) {
+            clientSocket.setSoTimeout(timeout);
+            soTimeout = timeout;
+        }
+    }
+
+    /**
+     * Makes sure that the next count bytes of the connection are in the input buffer.
+     *
+     * @param count the number of bytes needed
+     * @return true if they are available from inPos, false otherwise
+     * @throws IOException if reading from the connection fails
+     */
+    private boolean require(int count) throws IOException {
+        if (count > WordleServer.getMaxRequestSize()) return false;
+        while (inLimit - inPos < count)
+            if (!fill()) return false;
+        return true;
+    }
+
+    /**
+     * Makes sure that a complete line is in the input buffer.
+     *
+     * @return the position of the '\n' ending the line, or -1 if no line could be read
+     * @throws IOException if reading from the connection fails
+     */
+    private int requireLine() throws IOException {
+        int from = inPos;
+        while (true) {
+            for (int i = from; i < inLimit; i++)
+                if (in[i] == '\n') return i;
+            from = inLimit - inPos; // Relative, as fill() may move the bytes
+            if (!fill()) return -1;
+            from += inPos;
         }
     }
 
@@ -0,0 +1,501 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The HttpRequestParser class parses the head of an HTTP request directly from its bytes.
+ * It recognizes the request line (method, route, guessed word) and the handful of headers
+ * the server cares about, and records them as offsets into the caller's buffer or as primitives.
+ * No regular expression is used and no String is created while parsing; a parser is reset
+ * and reused for every request of a connection.
+ */
+public class HttpRequestParser {
+    public static final int INCOMPLETE = -1;
+    public static final int LINE_TOO_LONG = -2; // The request line exceeds WordleServer.getMaxRequestLine()
+    public static final int HEADERS_TOO_LARGE = -3; // The headers exceed WordleServer.getMaxHeaderSize() or getMaxHeaders()
+
+    /**
+     * The resources served by the application.
+     */
+    public enum Route { ROOT, PLAY, GUESS, GUESS_WORD, HINT, METRICS, FAVICON, RESTART, SCRIPT, STYLES, LOGO, UNKNOWN }
+
+    private static final HttpMethod[] METHODS = HttpMethod.values();
+    private static final byte[] VERSION = bytes(" HTTP/1.1");
+    private static final byte[] PATH_ROOT = bytes("/");
+    private static final byte[] PATH_PLAY = bytes("/play.html");
+    private static final byte[] PATH_GUESS = bytes("/play.html/guess");
+    private static final byte[] PATH_GUESS_WORD = bytes("/play.html/guess?word=");
+    private static final byte[] PATH_HINT = bytes("/play.html/hint");
+    private static final byte[] PATH_METRICS = bytes("/metrics");
+    private static final byte[] PATH_FAVICON = bytes("/favicon.ico");
+    private static final byte[] PATH_RESTART = bytes("/restart");
+    private static final byte[] PATH_PLAY_RESTART = bytes("/play.html/restart");
+    private static final byte[] PATH_SCRIPT = bytes("/app.js");
+    private static final byte[] PATH_STYLES = bytes("/app.css");
+    private static final byte[] PATH_LOGO = bytes("/logo.png");
+    private static final byte[] HEADER_COOKIE = bytes("Cookie");
+    private static final byte[] HEADER_CONTENT_LENGTH = bytes("Content-Length");
+    private static final byte[] HEADER_TRANSFER_ENCODING = bytes("Transfer-Encoding");
+    private static final byte[] HEADER_CONNECTION = bytes("Connection");
+    private static final byte[] HEADER_ROW = bytes("Row");
+    private static final byte[] HEADER_JS_ENABLED = bytes("JS-Enabled");
+    private static final byte[] HEADER_REQUESTED_WITH = bytes("X-Requested-With");
+    private static final byte[] HEADER_IF_NONE_MATCH = bytes("If-None-Match");
+    private static final byte[] HEADER_ACCEPT_ENCODING = bytes("Accept-Encoding");
+    private static final byte[] GZIP = bytes("gzip");
+    private static final byte[] DEFLATE = bytes("deflate");
+    private static final byte[] ANY = bytes("*");
+    private static final byte[] CHUNKED = bytes("chunked");
+    private static final byte[] CLOSE = bytes("close");
+    private static final byte[] KEEP_ALIVE = bytes("keep-alive");
+    private static final byte[] FALSE = bytes("false");
+    private static final byte[] XML_HTTP_REQUEST = bytes("XMLHttpRequest");
+    private static final int WORD_LENGTH = 5;
+    private static final int UUID_LENGTH = 36;
+
+    private byte[] buf;
+    private int scanned;
+    private int headEnd; // Or a limit exceeded
+    private int requestLineLength; // With its line break, INCOMPLETE until received
+    private int headerCount;
+
+    // Request line
+    private int lineStart, lineEnd;
+    private boolean requestLineValid;
+    private int methodStart, methodEnd;
+    private HttpMethod method;
+    private int uriStart, uriEnd;
+    private boolean versionValid;
+    private Route route;
+    private int wordStart;
+
+    // Headers
+    private int invalidHeaderStart, invalidHeaderEnd;
+    private long contentLength;
+    private boolean contentLengthValid;
+    private boolean chunked;
+    private boolean connectionClose, connectionKeepAlive;
+    private int cookieStart, cookieEnd;
+    private boolean hasRow, rowValid;
+    private int rowStart, rowEnd, row;
+    private boolean javaScriptDisabled;
+    private boolean hasRequestedWith, requestedWithValid;
+    private int requestedWithStart, requestedWithEnd;
+    private int ifNoneMatchStart, ifNoneMatchEnd;
+    private boolean acceptsGzip, acceptsDeflate;
+
+    public HttpRequestParser() { reset(); }
+
+    /**
+     * Forgets the previous request so that the parser can be used for the next one.
+     */
+    public void reset() {
+        this.buf = null;
+        this.scanned = 0;
+        this.headEnd = INCOMPLETE;
+        this.requestLineLength = INCOMPLETE;
+        this.headerCount = 0;
+        this.lineStart = this.lineEnd = 0;
+        this.requestLineValid = false;
+        this.methodStart = this.methodEnd = 0;
+        this.method = null;
+        this.uriStart = this.uriEnd = 0;
+        this.versionValid = false;
+        this.route = Route.UNKNOWN;
+        this.wordStart = -1;
+        this.invalidHeaderStart = this.invalidHeaderEnd = -1;
+        this.contentLength = -1;
+        this.contentLengthValid = true;
+        this.chunked = false;
+        this.connectionClose = this.connectionKeepAlive = false;
+        this.cookieStart = this.cookieEnd = -1;
+        this.hasRow = this.rowValid = false;
+        this.rowStart = this.rowEnd = this.row = -1;
+        this.javaScriptDisabled = false;
+        this.hasRequestedWith = this.requestedWithValid = false;
+        this.requestedWithStart = this.requestedWithEnd = -1;
+        this.ifNoneMatchStart = this.ifNoneMatchEnd = -1;
+        this.acceptsGzip = this.acceptsDeflate = false;
+    }
+
+    /**
+     * Parses the request head held in buf[off, end).
+     * Both CRLF and bare LF line terminators are accepted. When the head is incomplete,
+     * the parser remembers how far it looked, so that calling it again with more bytes
+     * does not scan the same bytes twice.
+     * The limits on the request line and the headers are checked as the bytes arrive, so that
+     * a head too large is refused without waiting for the rest of it.
+     *
+     * @param buf the buffer holding the request
+     * @param off the position of the first byte of the request
+     * @param end the position after the last byte received
+     * @return the position right after the blank line ending the head, INCOMPLETE,
+     *         or LINE_TOO_LONG or HEADERS_TOO_LARGE, returned again until the parser is reset
+     */
+    public int parse(byte[] buf, int off, int end) {
+        if (headEnd != INCOMPLETE) return headEnd;
+
+        // Look for the blank line; the bytes before it are only looked back at, never rescanned
+        int blank = INCOMPLETE;
+        for (int i = off + scanned; i < end; i++) {
+            if (buf[i] != '\n') continue;
+            if (i == off) { blank = i + 1; break; }
+            if (buf[i - 1] == '\n') { blank = i + 1; break; }
+            if (buf[i - 1] == '\r' && (i - 1 == off || buf[i - 2] == '\n')) { blank = i + 1; break; }
+            if (requestLineLength == INCOMPLETE) requestLineLength = i + 1 - off;
+            else headerCount++;
+        }
+        int limit = checkLimits((blank == INCOMPLETE ? end : blank) - off);
+        if (limit != INCOMPLETE) return this.headEnd = limit;
+        if (blank == INCOMPLETE) {
+            this.scanned = end - off;
+            return INCOMPLETE;
+        }
+
+        this.buf = buf;
+        this.headEnd = blank;
+
+        // Parse the head line by line
+        boolean first = true;
+        int start = off;
+        while (start < blank) {
+            int eol = start;
+            while (buf[eol] != '\n') eol++;
+            int lineEnd = (eol > start && buf[eol - 1] == '\r') ? eol - 1 : eol;
+
+            if (first) {
+                parseRequestLine(start, lineEnd);
+                first = false;
+            }
+            else if (lineEnd > start) parseHeader(start, lineEnd);
+            start = eol + 1;
+        }
+        return headEnd;
+    }
+
+    /**
+     * Checks the part of the head received so far against the limits.
+     *
+     * @param received the number of bytes of the head received
+     * @return the limit exceeded, or INCOMPLETE
+     */
+    private int checkLimits(int received) {
+        if (requestLineLength == INCOMPLETE) return received > WordleServer.getMaxRequestLine() ? LINE_TOO_LONG : INCOMPLETE;
+        if (requestLineLength > WordleServer.getMaxRequestLine()) return LINE_TOO_LONG;
+        boolean tooLarge = received - requestLineLength > WordleServer.getMaxHeaderSize() || headerCount > WordleServer.getMaxHeaders();
+        return tooLarge ? HEADERS_TOO_LARGE : INCOMPLETE;
+    }
+
+    /**
+     * Parses "METHOD URI HTTP/1.1".
+     */
+    private void parseRequestLine(int start, int end) {
+        this.lineStart = start;
+        this.lineEnd = end;
+
+        // Method: one or more upper case letters followed by a space
+        int i = start;
+        while (i < end && buf[i] >= 'A' && buf[i] <= 'Z') i++;
+        if (i == start || i >= end || buf[i] != ' ') return;
+        this.methodStart = start;
+        this.methodEnd = i;
+
+        // The line must end with " HTTP/1.1"
+        if (end - VERSION.length <= i || !regionEquals(end - VERSION.length, end, VERSION)) return;
+        this.requestLineValid = true;
+
+        for (HttpMethod candidate : METHODS) {
+            if (equalsAscii(methodStart, methodEnd, candidate.name())) {
+                this.method = candidate;
+                break;
+            }
+        }
+
+        // The URI runs up to the next space, whatever follows it is the version
+        this.uriStart = i + 1;
+        int space = uriStart;
+        while (space < end && buf[space] != ' ') space++;
+        this.uriEnd = space;
+        this.versionValid = (space == end - VERSION.length);
+
+        this.route = matchRoute(uriStart, uriEnd);
+    }
+
+    /**
+     * Maps the URI onto one of the routes of the application.
+     */
+    private Route matchRoute(int start, int end) {
+        if (regionEquals(start, end, PATH_ROOT)) return Route.ROOT;
+        if (regionEquals(start, end, PATH_PLAY)) return Route.PLAY;
+        if (regionEquals(start, end, PATH_GUESS)) return Route.GUESS;
+        if (regionEquals(start, end, PATH_HINT)) return Route.HINT;
+        if (regionEquals(start, end, PATH_METRICS)) return Route.METRICS;
+        if (regionEquals(start, end, PATH_FAVICON)) return Route.FAVICON;
+        if (regionEquals(start, end, PATH_RESTART) || regionEquals(start, end, PATH_PLAY_RESTART)) return Route.RESTART;
+
+        // Static assets are linked with a version in their query string, which is ignored
+        int path = start;
+        while (path < end && buf[path] != '?') path++;
+        if (regionEquals(start, path, PATH_SCRIPT)) return Route.SCRIPT;
+        if (regionEquals(start, path, PATH_STYLES)) return Route.STYLES;
+        if (regionEquals(start, path, PATH_LOGO)) return Route.LOGO;
+
+        // /play.html/guess?word=[A-Z]{5}
+        int word = start + PATH_GUESS_WORD.length;
+        if (end - word == WORD_LENGTH && regionEquals(start, word, PATH_GUESS_WORD)) {
+            for (int i = word; i < end; i++)
+                if (buf[i] < 'A' || buf[i] > 'Z') return Route.UNKNOWN;
+            this.wordStart = word;
+            return Route.GUESS_WORD;
+        }
+        return Route.UNKNOWN;
+    }
+
+    /**
+     * Parses "Name: value" and records the headers of interest.
+     */
+    private void parseHeader(int start, int end) {
+        // The name is at least one byte long and is followed by ": "
+        int colon = start;
+        while (colon < end && buf[colon] != ':') colon++;
+        if (colon == start || colon + 1 >= end || buf[colon + 1] != ' ') {
+            if (invalidHeaderStart == -1) {
+                this.invalidHeaderStart = start;
+                this.invalidHeaderEnd = end;
+            }
+            return;
+        }
+        int valueStart = colon + 2;
+
+        if (equalsIgnoreCase(start, colon, HEADER_CONTENT_LENGTH)) {
+            long length = 0;
+            boolean valid = valueStart < end;
+            for (int i = valueStart; i < end && valid; i++) {
+                if (buf[i] < '0' || buf[i] > '9' || length > Integer.MAX_VALUE) valid = false;
+                else length = length * 10 + (buf[i] - '0');
+            }
+            this.contentLengthValid = valid && length <= Integer.MAX_VALUE;
+            this.contentLength = valid ? length : 0;
+        }
+        else if (equalsIgnoreCase(start, colon, HEADER_TRANSFER_ENCODING)) this.chunked = contains(valueStart, end, CHUNKED);
+        else if (equalsIgnoreCase(start, colon, HEADER_CONNECTION)) {
+            this.connectionClose = equalsIgnoreCase(valueStart, end, CLOSE);
+            this.connectionKeepAlive = equalsIgnoreCase(valueStart, end, KEEP_ALIVE);
+        }
+        else if (equalsIgnoreCase(start, colon, HEADER_COOKIE)) {
+            // The session ID runs from the first '=' up to the next cookie, if any
+            int equals = valueStart;
+            while (equals < end && buf[equals] != '=') equals++;
+            int valueEnd = equals;
+            while (valueEnd < end && buf[valueEnd] != ';') valueEnd++;
+            this.cookieStart = Math.min(equals + 1, end);
+            this.cookieEnd = Math.max(cookieStart, valueEnd);
+        }
+        else if (equalsIgnoreCase(start, colon, HEADER_ROW)) {
+            this.hasRow = true;
+            this.rowStart = valueStart;
+            this.rowEnd = end;
+            parseRow(valueStart, end);
+        }
+        else if (equalsIgnoreCase(start, colon, HEADER_JS_ENABLED)) this.javaScriptDisabled = regionEquals(valueStart, end, FALSE);
+        else if (equalsIgnoreCase(start, colon, HEADER_REQUESTED_WITH)) {
+            this.hasRequestedWith = true;
+            this.requestedWithValid = regionEquals(valueStart, end, XML_HTTP_REQUEST);
+            this.requestedWithStart = valueStart;
+            this.requestedWithEnd = end;
+        }
+        else if (equalsIgnoreCase(start, colon, HEADER_IF_NONE_MATCH)) {
+            this.ifNoneMatchStart = valueStart;
+            this.ifNoneMatchEnd = end;
+        }
+        else if (equalsIgnoreCase(start, colon, HEADER_ACCEPT_ENCODING)) parseAcceptEncoding(valueStart, end);
+    }
+
+    /**
+     * Parses the list of content codings of Accept-Encoding, such as "gzip, deflate;q=0.5, br".
+     * A coding with a zero quality is refused; "*" stands for every coding not listed.
+     */
+    private void parseAcceptEncoding(int start, int end) {
+        boolean gzipListed = false, deflateListed = false, any = false;
+        int i = start;
+        while (i < end) {
+            // Isolate the next coding and its parameters
+            while (i < end && (buf[i] == ' ' || buf[i] == ',')) i++;
+            int codingEnd = i;
+            while (codingEnd < end && buf[codingEnd] != ',' && buf[codingEnd] != ';' && buf[codingEnd] != ' ') codingEnd++;
+            int itemEnd = codingEnd;
+            while (itemEnd < end && buf[itemEnd] != ',') itemEnd++;
+            boolean accepted = !isZeroQuality(codingEnd, itemEnd);
+
+            if (equalsIgnoreCase(i, codingEnd, GZIP)) { gzipListed = true; this.acceptsGzip = accepted; }
+            else if (equalsIgnoreCase(i, codingEnd, DEFLATE)) { deflateListed = true; this.acceptsDeflate = accepted; }
+            else if (regionEquals(i, codingEnd, ANY)) any = accepted;
+            i = itemEnd;
+        }
+        if (any && !gzipListed) this.acceptsGzip = true;
+        if (any && !deflateListed) this.acceptsDeflate = true;
+    }
+
+    /**
+     * Checks whether the parameters of a coding hold "q=0", "q=0.0"...
+     */
+    private boolean isZeroQuality(int start, int end) {
+        int q = start;
+        while (q + 1 < end && !((buf[q] == 'q' || buf[q] == 'Q') && buf[q + 1] == '=')) q++;
+        if (q + 1 >= end) return false;
+
+        int i = q + 2;
+        if (i >= end || buf[i] != '0') return false;
+        for (i++; i < end && buf[i] != ' '; i++)
+            if (buf[i] != '.' && buf[i] != '0') return false;
+        return true;
+    }
+
+    /**
+     * Parses the Row header as a signed integer.
+     */
+    private void parseRow(int start, int end) {
+        boolean negative = start < end && buf[start] == '-';
+        int i = negative ? start + 1 : start;
+        if (i >= end || end - i > 9) return;
+
+        int value = 0;
+        for (; i < end; i++) {
+            if (buf[i] < '0' || buf[i] > '9') return;
+            value = value * 10 + (buf[i] - '0');
+        }
+        this.row = negative ? -value : value;
+        this.rowValid = true;
+    }
+
+
+    // ACCESSORS ------------------------------------------------------------
+    public boolean isRequestLineValid() { return requestLineValid; }
+    public HttpMethod getMethod() { return method; }
+    public boolean isVersionValid() { return versionValid; }
+    public Route getRoute() { return route; }
+    public boolean hasInvalidHeader() { return invalidHeaderStart != -1; }
+    public boolean hasContentLength() { return contentLength != -1; }
+    public boolean isContentLengthValid() { return contentLengthValid; }
+    public int getContentLength() { return (int) Math.max(0, contentLength); }
+    public boolean isChunked() { return chunked; }
+    public boolean isConnectionClose() { return connectionClose; }
+    public boolean isConnectionKeepAlive() { return connectionKeepAlive; }
+    public boolean hasCookie() { return cookieStart != -1; }
+    public boolean hasRow() { return hasRow; }
+    public boolean isRowValid() { return rowValid; }
+    public int getRow() { return row; }
+    public boolean isJavaScriptDisabled() { return javaScriptDisabled; }
+    public boolean hasRequestedWith() { return hasRequestedWith; }
+    public boolean isRequestedWithValid() { return requestedWithValid; }
+    public boolean acceptsGzip() { return acceptsGzip; }
+    public boolean acceptsDeflate() { return acceptsDeflate; }
+
+    /**
+     * Checks that the session ID of the cookie is a UUID as the server generates them:
+     * 36 characters, lower case hexadecimal digits grouped 8-4-4-4-12 by dashes.
+     *
+     * @return true if the session ID is well formed, false otherwise
+     */
+    public boolean isSessionIdValid() {
+        if (cookieStart == -1 || cookieEnd - cookieStart != UUID_LENGTH) return false;
+        for (int i = 0; i < UUID_LENGTH; i++) {
+            byte b = buf[cookieStart + i];
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (b != '-') return false;
+            }
+            else if (!((b >= '0' && b <= '9') || (b >= 'a' && b <= 'f'))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the If-None-Match header matches the given entity tag,
+     * meaning that the client already holds the current version of the resource.
+     * The header is a comma separated list of tags, or "*"; weak tags (W/"...") also match.
+     *
+     * @param eTag the entity tag of the resource, quotes included
+     * @return true if one of the tags of the header matches, false otherwise or without the header
+     */
+    public boolean matchesIfNoneMatch(byte[] eTag) {
+        int i = ifNoneMatchStart;
+        while (i != -1 && i < ifNoneMatchEnd) {
+            // Isolate the next tag of the list
+            while (i < ifNoneMatchEnd && (buf[i] == ' ' || buf[i] == ',')) i++;
+            int tagEnd = i;
+            while (tagEnd < ifNoneMatchEnd && buf[tagEnd] != ',') tagEnd++;
+            int last = tagEnd;
+            while (last > i && buf[last - 1] == ' ') last--;
+
+            if (last - i == 1 && buf[i] == '*') return true;
+            int tag = (last - i > 2 && buf[i] == 'W' && buf[i + 1] == '/') ? i + 2 : i;
+            if (regionEquals(tag, last, eTag)) return true;
+            i = tagEnd;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the offset of the first letter of the guessed word of a GUESS_WORD route.
+     *
+     * @return the offset of the word in the buffer, or -1 if the route is not GUESS_WORD
+     */
+    public int getWordOffset() { return wordStart; }
+
+    /**
+     * Returns the guessed word of a GUESS_WORD route, packed straight from the buffer.
+     *
+     * @return the packed word, or PackedWord.NONE if the route is not GUESS_WORD
+     */
+    public int getPackedGuessWord() { return wordStart == -1 ? PackedWord.NONE : PackedWord.encode(buf, wordStart); }
+
+    // The following accessors create Strings: they are meant for the few values that need one
+
+    public String getSessionId() { return cookieStart == -1 ? "" : string(cookieStart, cookieEnd); }
+    public String getGuessWord() {
+        if (wordStart == -1) return "";
+        char[] word = new char[WORD_LENGTH];
+        for (int i = 0; i < WORD_LENGTH; i++) word[i] = (char) (buf[wordStart + i] | 0x20); // Lower case
+        return new String(word);
+    }
+    public String getRequestLine() { return buf == null ? "" : string(lineStart, lineEnd); }
+    public String getMethodName() { return string(methodStart, methodEnd); }
+    public String getUri() { return string(uriStart, uriEnd); }
+    public String getVersion() { return uriEnd < lineEnd ? string(uriEnd + 1, lineEnd) : ""; }
+    public String getInvalidHeader() { return invalidHeaderStart == -1 ? "" : string(invalidHeaderStart, invalidHeaderEnd); }
+    public String getRowValue() { return rowStart == -1 ? "" : string(rowStart, rowEnd); }
+    public String getRequestedWith() { return requestedWithStart == -1 ? "" : string(requestedWithStart, requestedWithEnd); }
+
+
+    // HELPERS METHODS ------------------------------------------------------------
+    private boolean regionEquals(int start, int end, byte[] expected) {
+        if (end - start != expected.length) return false;
+        for (int i = 0; i < expected.length; i++)
+            if (buf[start + i] != expected[i]) return false;
+        return true;
+    }
+
+    private boolean equalsIgnoreCase(int start, int end, byte[] expected) {
+        if (end - start != expected.length) return false;
+        for (int i = 0; i < expected.length; i++)
+            if (toLower(buf[start + i]) != toLower(expected[i])) return false;
+        return true;
+    }
+
+    private boolean equalsAscii(int start, int end, String expected) {
+        if (end - start != expected.length()) return false;
+        for (int i = 0; i < expected.length(); i++)
+            if (buf[start + i] != expected.charAt(i)) return false;
+        return true;
+    }
+
+    private boolean contains(int start, int end, byte[] expected) {
+        for (int i = start; i + expected.length <= end; i++)
+            if (regionEquals(i, i + expected.length, expected)) return true;
+        return false;
+    }
+
+    private static int toLower(byte b) { return (b >= 'A' && b <= 'Z') ? b | 0x20 : b; }
+
+    private String string(int start, int end) { return new String(buf, start, end - start, StandardCharsets.ISO_8859_1); }
+
+    private static byte[] bytes(String s) { return s.getBytes(StandardCharsets.US_ASCII); }
+}
@@ -0,0 +1,118 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The LatencyHistogram class counts durations in nanoseconds, in the manner of HdrHistogram:
+ * the buckets are log-linear, SUB_BUCKETS per power of 2, so that a value is known within
+ * 1/SUB_BUCKETS of itself whatever its magnitude, from a nanosecond to centuries, in 8 KB.
+ *
+ * Recording is lock-free and allocates nothing: one atomic increment and a LongAdder.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration, negative values count as 0
+     */
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(bucketOf(nanos));
+        sum.add(nanos);
+    }
+
+    /**
+     * Records a duration measured by a client that waits for each response before sending the next
+     * request, correcting for coordinated omission: while a response was late, the requests that
+     * would have been sent every expected interval are recorded too, with the delay they would
+     * have seen (as HdrHistogram's recordValueWithExpectedInterval).
+     *
+     * @param nanos                 the duration
+     * @param expectedIntervalNanos the time between two requests when nothing is late, 0 to record the duration only
+     */
+    public void recordCorrected(long nanos, long expectedIntervalNanos) {
+        record(nanos);
+        if (expectedIntervalNanos <= 0) return;
+        for (long missed = nanos - expectedIntervalNanos; missed >= expectedIntervalNanos; missed -= expectedIntervalNanos) record(missed);
+    }
+
+    // Getters
+    public long getSum() { return sum.sum(); }
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) count += counts.get(i);
+        return count;
+    }
+
+    /**
+     * Counts the durations up to a bound. Exact when the bound plus one is a power of 2,
+     * otherwise the bucket holding the bound counts in full.
+     *
+     * @param nanos the bound, included
+     * @return the number of durations recorded up to the bound
+     */
+    public long getCountAtOrBelow(long nanos) {
+        long count = 0;
+        int last = bucketOf(Math.max(nanos, 0));
+        for (int i = 0; i <= last; i++) count += counts.get(i);
+        return count;
+    }
+
+    /**
+     * Returns the duration below which a share of the durations fall.
+     *
+     * @param quantile the share, from 0 to 1
+     * @return the highest duration of the bucket holding the quantile, 0 if nothing was recorded
+     */
+    public long getValueAtQuantile(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) total += (snapshot[i] = counts.get(i));
+        if (total == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return highestOf(i);
+        }
+        return highestOf(BUCKETS - 1);
+    }
+
+    /**
+     * Forgets every duration recorded.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        sum.reset();
+    }
+
+
+    // HELPERS METHODS ------------------------------------------------------------
+    /**
+     * Values below SUB_BUCKETS have a bucket each; above, the highest bit gives the power of 2
+     * and the SUB_BITS bits below it the bucket within the power.
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (magnitude - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (magnitude - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Returns the highest value of a bucket.
+     */
+    private static long highestOf(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,364 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The LoadGenerator class simulates players of the Wordle game against a running server, as the
+ * page and its script would: each player loads the page (a new session), guesses with fetches
+ * carrying the Row and X-Requested-With headers, reloads the page now and then, and restarts once
+ * the game is won or lost. The guesses are drawn from the secret words still consistent with the
+ * feedbacks, so that the games end like real ones. Each player keeps its own keep-alive connection.
+ *
+ * In closed loop, a player thinks for about thinkMs between a response and its next request.
+ * In open loop, the players send rate requests per second between them on a fixed schedule,
+ * whatever the response times, in the manner of wrk2.
+ *
+ * The response time of a request is measured from the time it was due rather than sent, so that
+ * a stalled server or a saturated client does not hide the requests it held back (coordinated
+ * omission); in closed loop, the requests a late response prevented are also accounted for
+ * (see LatencyHistogram.recordCorrected()). The service time, from the sending of the request
+ * to its response, is reported next to it.
+ *
+ * Usage: java LoadGenerator [closed|open] [players=1000] [seconds=30] [thinkMs=1000 | rate=1000] [workers=64]
+ */
+public class LoadGenerator {
+    private static final String HOST = System.getProperty("wordle.loadHost", "localhost");
+    private static final int PORT = Integer.getInteger("wordle.loadPort", WordleServer.getPort());
+    private static final int SOCKET_TIMEOUT = 10_000; // ms
+    private static final double RELOAD_PROBABILITY = 0.1; // Of reloading the page after a guess
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999, 1 };
+
+    private static final LatencyHistogram RESPONSE_TIME = new LatencyHistogram(); // From the time the request was due
+    private static final LatencyHistogram SERVICE_TIME = new LatencyHistogram(); // From the time the request was sent
+    private static final LongAdder REQUESTS = new LongAdder();
+    private static final LongAdder ERRORS = new LongAdder(); // Unexpected responses and broken connections
+    private static final LongAdder GAMES = new LongAdder();
+    private static final LongAdder WINS = new LongAdder();
+
+    public static void main(String[] args) throws InterruptedException {
+        boolean open = args.length > 0 && args[0].equals("open");
+        int players = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        long pace = args.length > 3 ? Long.parseLong(args[3]) : 1000; // Think time in ms, or requests per second
+        int workers = args.length > 4 ? Integer.parseInt(args[4]) : 64;
+
+        // Time between two requests of a player: its think time, or its share of the rate
+        long interval = open ? (long) (players * 1e9 / pace) : pace * 1_000_000L;
+        System.out.println("-- " + (open ? "Open loop, " + pace + " requests/s" : "Closed loop, " + pace + " ms of think time")
+                + ", " + players + " players, " + workers + " workers, " + seconds + " s against " + HOST + ":" + PORT);
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(workers);
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        for (int i = 0; i < players; i++) new Player(executor, open, interval, end).schedule(start + interval / players * i);
+
+        for (int second = 1; second <= seconds; second++) {
+            Thread.sleep(Math.max(0, (start + second * 1_000_000_000L - System.nanoTime()) / 1_000_000));
+            System.out.println("-- " + second + " s: " + REQUESTS.sum() + " requests, " + ERRORS.sum() + " errors");
+        }
+        executor.shutdown();
+        executor.awaitTermination(2 * SOCKET_TIMEOUT, TimeUnit.MILLISECONDS);
+        report((System.nanoTime() - start) / 1e9);
+        System.exit(0); // Players still waiting for a response
+    }
+
+
+    // HELPERS METHODS ------------------------------------------------------------
+    private static void report(double elapsed) {
+        long requests = REQUESTS.sum();
+        System.out.printf(Locale.ROOT, "-- %d requests in %.1f s: %.1f requests/s, %d errors, %d games (%d won)%n",
+                requests, elapsed, requests / elapsed, ERRORS.sum(), GAMES.sum(), WINS.sum());
+        StringBuilder header = new StringBuilder("--          ms");
+        for (double quantile : QUANTILES) header.append(String.format(Locale.ROOT, "%10s", quantile == 1 ? "max" : "p" + quantile * 100));
+        System.out.println(header);
+        printQuantiles("response", RESPONSE_TIME);
+        printQuantiles("service", SERVICE_TIME);
+    }
+
+    private static void printQuantiles(String name, LatencyHistogram histogram) {
+        StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "-- %-10s", name));
+        for (double quantile : QUANTILES) line.append(String.format(Locale.ROOT, "%10.3f", histogram.getValueAtQuantile(quantile) / 1e6));
+        System.out.println(line);
+    }
+
+    /**
+     * The next request of a player.
+     */
+    private enum Step { PAGE, GUESS, RELOAD, RESTART }
+
+    /**
+     * A player, run by the workers one request at a time and scheduled again in between.
+     */
+    private static class Player implements Runnable {
+        private static final int[] POOL = WordDictionary.getSecretPool();
+
+        private final ScheduledThreadPoolExecutor executor;
+        private final boolean open;
+        private final long interval, end;
+        private long due; // When the next request is due, in System.nanoTime()
+
+        private Socket socket = null;
+        private InputStream in;
+        private OutputStream out;
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+        private final byte[] scratch = new byte[8192];
+        private String cookie = ""; // SESSID of the game, empty before the first page
+        private boolean closeAfter;
+
+        private Step step = Step.PAGE;
+        private int row = 0;
+        private int[] candidates = POOL; // Secret words still possible, copied from the pool when first narrowed
+        private int count = POOL.length;
+
+        Player(ScheduledThreadPoolExecutor executor, boolean open, long interval, long end) {
+            this.executor = executor;
+            this.open = open;
+            this.interval = interval;
+            this.end = end;
+        }
+
+        void schedule(long due) {
+            this.due = due;
+            executor.schedule(this, Math.max(0, due - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void run() {
+            if (due >= end) {
+                close();
+                return;
+            }
+            long sent = System.nanoTime();
+            boolean expected;
+            try {
+                expected = play();
+            }
+            catch (IOException e) {
+                expected = false;
+                close();
+            }
+            long received = System.nanoTime();
+
+            REQUESTS.increment();
+            SERVICE_TIME.record(received - sent);
+            if (open) RESPONSE_TIME.record(received - due);
+            else RESPONSE_TIME.recordCorrected(received - due, interval);
+            if (!expected) {
+                // Starts over with a new session rather than guessing at the state of the server
+                ERRORS.increment();
+                newGame();
+            }
+
+            if (open) schedule(due + interval);
+            else schedule(received + (long) (interval * (0.5 + ThreadLocalRandom.current().nextDouble()))); // Players out of step
+        }
+
+        /**
+         * Sends the next request of the player and reads its response.
+         *
+         * @return false if the response was not the one a browser expects
+         */
+        private boolean play() throws IOException {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            switch (step) {
+                case PAGE:
+                    if (exchange("/play.html", "Accept-Encoding: gzip, deflate\r\n", false) != 200 || cookie.isEmpty()) return false;
+                    step = Step.GUESS;
+                    return true;
+
+                case RELOAD:
+                    if (exchange("/play.html", "Accept-Encoding: gzip, deflate\r\n", false) != 200) return false;
+                    step = Step.GUESS;
+                    return true;
+
+                case GUESS:
+                    int guess = candidates[random.nextInt(count)];
+                    String headers = "JS-Enabled: true\r\nRow: " + row + "\r\nX-Requested-With: XMLHttpRequest\r\n";
+                    if (exchange("/play.html/guess?word=" + PackedWord.decode(guess).toUpperCase(Locale.ROOT), headers, true) != 200) return false;
+
+                    String json = body.toString("US-ASCII");
+                    String status = jsonField(json, "Status");
+                    if (status.equals("Playing")) {
+                        String message = jsonField(json, "Message");
+                        narrow(guess, FeedbackScorer.fromColours(PackedWord.encodeColours(message.substring(message.lastIndexOf(':') + 1))));
+                        row++;
+                        // A reload before the last guess ends the game, as in a browser (see HttpHandler.pleaseRespond())
+                        step = row < WordleServer.getMaxAttempts() && random.nextDouble() < RELOAD_PROBABILITY ? Step.RELOAD : Step.GUESS;
+                        return true;
+                    }
+                    if (!status.equals("Win") && !status.equals("Gameover")) return false;
+                    GAMES.increment();
+                    if (status.equals("Win")) WINS.increment();
+                    step = Step.RESTART;
+                    return true;
+
+                default: // RESTART
+                    int code = exchange("/play.html/restart", "", false);
+                    newGame();
+                    return code == 303;
+            }
+        }
+
+        private void newGame() {
+            cookie = "";
+            step = Step.PAGE;
+            row = 0;
+            candidates = POOL;
+            count = POOL.length;
+        }
+
+        /**
+         * Keeps the candidates that would have given a feedback to a guess.
+         */
+        private void narrow(int guess, int feedback) {
+            if (feedback < 0) return;
+            int[] into = candidates == POOL ? new int[count] : candidates; // Filtered in place once copied
+            int kept = 0;
+            for (int i = 0; i < count; i++)
+                if (FeedbackScorer.compute(candidates[i], guess) == feedback) into[kept++] = candidates[i];
+            candidates = candidates == POOL ? Arrays.copyOf(into, kept) : into;
+            count = kept;
+            if (count == 0) { // A secret out of the pool: guesses at random from then on
+                candidates = POOL;
+                count = POOL.length;
+            }
+        }
+
+        /**
+         * Sends a GET request on the connection of the player, opened if need be, and reads the response.
+         * A kept-alive connection the server closed in the meantime is replaced once.
+         *
+         * @param target  the request target
+         * @param headers extra header lines, each ending with CRLF
+         * @param keep    true to keep the body in the body buffer, false to skip it
+         * @return the status code
+         */
+        private int exchange(String target, String headers, boolean keep) throws IOException {
+            boolean reused = socket != null;
+            try {
+                return send(target, headers, keep);
+            }
+            catch (IOException e) {
+                close();
+                if (!reused) throw e;
+                return send(target, headers, keep);
+            }
+        }
+
+        private int send(String target, String headers, boolean keep) throws IOException {
+            if (socket == null) connect();
+            String request = "GET " + target + " HTTP/1.1\r\nHost: " + HOST + ":" + PORT + "\r\n" + headers
+                    + (cookie.isEmpty() ? "" : "Cookie: SESSID=" + cookie + "\r\n") + "\r\n";
+            out.write(request.getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            String statusLine = readLine();
+            int code = Integer.parseInt(statusLine.substring(9, 12));
+            long contentLength = -1;
+            boolean chunked = false;
+            closeAfter = false;
+            for (String line = readLine(); !line.isEmpty(); line = readLine()) {
+                int colon = line.indexOf(':');
+                if (colon < 0) continue;
+                String name = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                String value = line.substring(colon + 1).trim();
+                if (name.equals("content-length")) contentLength = Long.parseLong(value);
+                else if (name.equals("transfer-encoding")) chunked = value.toLowerCase(Locale.ROOT).contains("chunked");
+                else if (name.equals("connection")) closeAfter = value.equalsIgnoreCase("close");
+                else if (name.equals("set-cookie") && value.startsWith("SESSID=")) {
+                    int semicolon = value.indexOf(';');
+                    cookie = value.substring(7, semicolon < 0 ? value.length() : semicolon);
+                }
+            }
+
+            body.reset();
+            if (chunked) {
+                for (long size = Long.parseLong(chunkSize(readLine()), 16); size > 0; size = Long.parseLong(chunkSize(readLine()), 16)) {
+                    readBody(size, keep);
+                    readLine();
+                }
+                while (!readLine().isEmpty()) ; // Trailers
+            }
+            else if (contentLength >= 0) readBody(contentLength, keep);
+            else if (code != 204 && code != 304) {
+                readBody(Long.MAX_VALUE, keep); // Up to the end of the connection
+                closeAfter = true;
+            }
+            if (closeAfter) close();
+            return code;
+        }
+
+        private void connect() throws IOException {
+            socket = new Socket();
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(SOCKET_TIMEOUT);
+            socket.connect(new InetSocketAddress(HOST, PORT), SOCKET_TIMEOUT);
+            in = new BufferedInputStream(socket.getInputStream(), 16 * 1024);
+            out = socket.getOutputStream();
+        }
+
+        private void close() {
+            if (socket == null) return;
+            try {
+                socket.close();
+            }
+            catch (IOException e) {
+                // Closed anyway
+            }
+            socket = null;
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder(64);
+            for (int b = in.read(); b != '\n'; b = in.read()) {
+                if (b == -1) throw new EOFException("Connection closed by the server");
+                if (b != '\r') line.append((char) b);
+            }
+            return line.toString();
+        }
+
+        private static String chunkSize(String line) {
+            int semicolon = line.indexOf(';'); // Chunk extensions
+            return (semicolon < 0 ? line : line.substring(0, semicolon)).trim();
+        }
+
+        /**
+         * Reads a number of bytes of the body, or up to the end of the stream for Long.MAX_VALUE.
+         */
+        private void readBody(long length, boolean keep) throws IOException {
+            for (long left = length; left > 0; ) {
+                int read = in.read(scratch, 0, (int) Math.min(scratch.length, left));
+                if (read == -1) {
+                    if (length == Long.MAX_VALUE) return;
+                    throw new EOFException("Body cut short");
+                }
+                if (keep) body.write(scratch, 0, read);
+                left -= read;
+            }
+        }
+
+        /**
+         * Returns the String value of a field of a flat JSON object, empty if absent.
+         */
+        private static String jsonField(String json, String name) {
+            int key = json.indexOf("\"" + name + "\"");
+            if (key < 0) return "";
+            int start = json.indexOf('"', json.indexOf(':', key) + 1) + 1;
+            int end = json.indexOf('"', start);
+            return start <= 0 || end < 0 ? "" : json.substring(start, end);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The Log class is the logger of the request path. Logging an event only claims a slot of a
+ * ring buffer and fills it: a background thread formats the events as JSON lines, one object per
+ * line, and writes them to WordleServer.getLogFile(), or to the standard output.
+ * The request threads never wait for the output nor for each other.
+ *
+ * Events below WordleServer.getLogLevel() are skipped, and only one in WordleServer.getLogSample()
+ * of the DEBUG and INFO events is kept. When the buffer is full, events are dropped and counted
+ * rather than waited for. Messages that are costly to build are to be guarded by isDebugEnabled().
+ */
+public class Log {
+    public enum Level { DEBUG, INFO, WARN, ERROR }
+
+    private static final Level LEVEL = Level.valueOf(WordleServer.getLogLevel().toUpperCase(Locale.ROOT));
+    private static final int SAMPLE = Math.max(1, WordleServer.getLogSample());
+    private static final int CAPACITY = Integer.highestOneBit(Math.max(2, WordleServer.getLogBufferSize()));
+    private static final int IDLE_PARK_NANOS = 1_000_000;
+
+    // Slot i holds the event of sequence s when PUBLISHED[i] is s + 1
+    private static final long[] TIMES = new long[CAPACITY];
+    private static final Level[] LEVELS = new Level[CAPACITY];
+    private static final String[] THREADS = new String[CAPACITY];
+    private static final String[] MESSAGES = new String[CAPACITY];
+    private static final Throwable[] ERRORS = new Throwable[CAPACITY];
+    private static final AtomicLongArray PUBLISHED = new AtomicLongArray(CAPACITY);
+    private static final AtomicLong CLAIMED = new AtomicLong(); // Next sequence to claim
+    private static volatile long consumed = 0; // Next sequence to write
+    private static volatile long flushed = 0; // Sequences written and flushed to the output
+    private static final LongAdder WRITTEN = new LongAdder();
+    private static final LongAdder DROPPED = new LongAdder();
+    static {
+        Thread writer = new Thread(Log::drain, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            long end = System.nanoTime() + 1_000_000_000L;
+            while (flushed < CLAIMED.get() && System.nanoTime() < end) LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }, "log-flush"));
+    }
+
+    public static boolean isDebugEnabled() { return LEVEL == Level.DEBUG; }
+    public static long getWrittenCount() { return WRITTEN.sum(); }
+    public static long getDroppedCount() { return DROPPED.sum(); }
+
+    public static void debug(String message) { if (LEVEL == Level.DEBUG && sampled()) enqueue(Level.DEBUG, message, null); }
+    public static void info(String message) { if (LEVEL.compareTo(Level.INFO) <= 0 && sampled()) enqueue(Level.INFO, message, null); }
+    public static void warn(String message) { if (LEVEL.compareTo(Level.WARN) <= 0) enqueue(Level.WARN, message, null); }
+    public static void error(String message, Throwable error) { enqueue(Level.ERROR, message, error); }
+
+
+    // HELPERS METHODS ------------------------------------------------------------
+    private static boolean sampled() { return SAMPLE == 1 || ThreadLocalRandom.current().nextInt(SAMPLE) == 0; }
+
+    /**
+     * Claims the next slot and fills it, or drops the event if the writer is a whole buffer behind.
+     */
+    private static void enqueue(Level level, String message, Throwable error) {
+        long sequence;
+        do {
+            sequence = CLAIMED.get();
+            if (sequence - consumed >= CAPACITY) {
+                DROPPED.increment();
+                return;
+            }
+        } while (!CLAIMED.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) sequence & (CAPACITY - 1);
+        TIMES[slot] = System.currentTimeMillis();
+        LEVELS[slot] = level;
+        THREADS[slot] = Thread.currentThread().getName();
+        MESSAGES[slot] = message;
+        ERRORS[slot] = error;
+        PUBLISHED.set(slot, sequence + 1); // Publishes the slot to the writer
+    }
+
+    /**
+     * Writes the events in sequence, flushing the output whenever the buffer is empty.
+     * Run by the writer thread.
+     */
+    private static void drain() {
+        Writer out = openOutput(WordleServer.getLogFile());
+        StringBuilder line = new StringBuilder(256);
+        boolean pending = false;
+        while (true) {
+            long sequence = consumed;
+            int slot = (int) sequence & (CAPACITY - 1);
+            try {
+                if (PUBLISHED.get(slot) != sequence + 1) {
+                    if (pending) out.flush();
+                    pending = false;
+                    flushed = sequence;
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+
+                line.setLength(0);
+                line.append("{\"time\":\"").append(Instant.ofEpochMilli(TIMES[slot])).append("\",\"level\":\"").append(LEVELS[slot]);
+                appendField(line, "thread", THREADS[slot]);
+                appendField(line, "message", MESSAGES[slot]);
+                if (ERRORS[slot] != null) appendField(line, "error", stackTrace(ERRORS[slot]));
+                line.append("\"}\n");
+                THREADS[slot] = MESSAGES[slot] = null;
+                ERRORS[slot] = null;
+                consumed = sequence + 1; // Frees the slot
+
+                out.append(line);
+                pending = true;
+                WRITTEN.increment();
+            }
+            catch (IOException e) {
+                consumed = sequence + 1;
+                DROPPED.increment();
+            }
+        }
+    }
+
+    private static Writer openOutput(String file) {
+        if (!file.isEmpty()) {
+            try {
+                return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8), 64 * 1024);
+            }
+            catch (IOException e) {
+                System.err.println("-- Could not open the log file " + file + ", logging to the standard output");
+                e.printStackTrace();
+            }
+        }
+        return new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    private static String stackTrace(Throwable error) {
+        StringWriter trace = new StringWriter();
+        error.printStackTrace(new PrintWriter(trace));
+        return trace.toString();
+    }
+
+    /**
+     * Closes the value before and opens a field: ","name":"value, the value escaped for JSON.
+     */
+    private static void appendField(StringBuilder line, String name, String value) {
+        line.append("\",\"").append(name).append("\":\"");
+        if (value == null) value = "null";
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': line.append("\\\""); break;
+                case '\\': line.append("\\\\"); break;
+                case '\n': line.append("\\n"); break;
+                case '\r': line.append("\\r"); break;
+                case '\t': line.append("\\t"); break;
+                default:
+                    if (c < 0x20) line.append(String.format("\\u%04x", (int) c));
+                    else line.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * The Metrics class is the registry of the server metrics, exposed at /metrics in the text
+ * format of Prometheus (version 0.0.4).
+ *
+ * The counters of the request path are LongAdders and the latencies LatencyHistograms: they are
+ * updated without locks nor allocations, from any thread. The values that already live somewhere
+ * else (sessions, pool queue, write-ahead log) are read when the metrics are scraped, through the
+ * gauges and counters registered at startup.
+ */
+public class Metrics {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4";
+    private static final HttpRequestParser.Route[] ROUTES = HttpRequestParser.Route.values();
+    private static final int MAX_STATUS = 600;
+    // Bounds of the exposed histogram buckets, powers of 2 from about a microsecond to half a minute
+    private static final int MIN_BUCKET_SHIFT = 10, MAX_BUCKET_SHIFT = 35;
+
+    private static final LongAdder[] REQUESTS = adders(ROUTES.length); // By route
+    private static final LongAdder[] RESPONSES = adders(MAX_STATUS); // By status code
+    private static final LongAdder BYTES_WRITTEN = new LongAdder();
+    private static final LongAdder CONNECTIONS = new LongAdder(); // Accepted
+    private static final LongAdder ACTIVE_CONNECTIONS = new LongAdder();
+    private static final LatencyHistogram PARSE_TIME = new LatencyHistogram();
+    private static final LatencyHistogram RENDER_TIME = new LatencyHistogram();
+    private static final LatencyHistogram HINT_TIME = new LatencyHistogram();
+    private static final List<Sampled> SAMPLED = new CopyOnWriteArrayList<>();
+
+    // Request path
+    public static void countRequest(HttpRequestParser.Route route) { REQUESTS[route.ordinal()].increment(); }
+    public static void countResponse(int statusCode) { if (statusCode >= 0 && statusCode < MAX_STATUS) RESPONSES[statusCode].increment(); }
+    public static void countBytesWritten(long bytes) { BYTES_WRITTEN.add(bytes); }
+    public static void connectionOpened() {
+        CONNECTIONS.increment();
+        ACTIVE_CONNECTIONS.increment();
+    }
+    public static void connectionClosed() { ACTIVE_CONNECTIONS.decrement(); }
+    public static void recordParseTime(long nanos) { PARSE_TIME.record(nanos); }
+    public static void recordRenderTime(long nanos) { RENDER_TIME.record(nanos); }
+    public static void recordHintTime(long nanos) { HINT_TIME.record(nanos); }
+
+    /**
+     * Registers a value read at each scrape.
+     *
+     * @param name  the name of the metric
+     * @param type  "gauge" or "counter"
+     * @param help  the description of the metric
+     * @param value the supplier of the value, called by the scraping thread
+     */
+    public static void register(String name, String type, String help, LongSupplier value) {
+        SAMPLED.add(new Sampled(name, type, help, value));
+    }
+
+    /**
+     * Registers the queue depth of the pool running the requests, when it can be known.
+     *
+     * @param executor the executor of the server
+     */
+    public static void registerPool(Executor executor) {
+        String help = "Requests or connections waiting for a worker thread";
+        if (executor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            register("wordle_pool_queue_depth", "gauge", help, () -> pool.getQueue().size());
+            register("wordle_pool_active_threads", "gauge", "Worker threads running a task", pool::getActiveCount);
+        }
+        else if (executor instanceof BoundedExecutor)
+            register("wordle_pool_queue_depth", "gauge", help, ((BoundedExecutor) executor)::getQueueLength);
+    }
+
+    /**
+     * Writes every metric in the text format.
+     *
+     * @return the exposition
+     */
+    public static String scrape() {
+        StringBuilder out = new StringBuilder(8192);
+
+        header(out, "wordle_requests_total", "counter", "HTTP requests received, by route");
+        for (HttpRequestParser.Route route : ROUTES)
+            out.append("wordle_requests_total{route=\"").append(route.name().toLowerCase(Locale.ROOT)).append("\"} ")
+                    .append(REQUESTS[route.ordinal()].sum()).append('\n');
+
+        header(out, "wordle_responses_total", "counter", "HTTP responses sent, by status code");
+        for (int code = 0; code < MAX_STATUS; code++) {
+            long count = RESPONSES[code].sum();
+            if (count > 0) out.append("wordle_responses_total{code=\"").append(code).append("\"} ").append(count).append('\n');
+        }
+
+        sample(out, "wordle_response_bytes_total", "counter", "Bytes of the responses handed to the sockets", BYTES_WRITTEN.sum());
+        sample(out, "wordle_connections_total", "counter", "Connections accepted", CONNECTIONS.sum());
+        sample(out, "wordle_connections_active", "gauge", "Connections open", ACTIVE_CONNECTIONS.sum());
+        histogram(out, "wordle_request_parse_seconds", "Time spent parsing request heads", PARSE_TIME);
+        histogram(out, "wordle_request_render_seconds", "Time from a parsed request to its response in the buffer", RENDER_TIME);
+        histogram(out, "wordle_hint_seconds", "Time to suggest a hint", HINT_TIME);
+
+        for (Sampled sampled : SAMPLED) sample(out, sampled.name, sampled.type, sampled.help, sampled.value.getAsLong());
+        return out.toString();
+    }
+
+
+    // HELPERS METHODS ------------------------------------------------------------
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) adders[i] = new LongAdder();
+        return adders;
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String type, String help, long value) {
+        header(out, name, type, help);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Writes a histogram in seconds, with cumulative buckets at powers of 2 nanoseconds,
+     * which are exact bounds of the buckets of LatencyHistogram.
+     */
+    private static void histogram(StringBuilder out, String name, String help, LatencyHistogram histogram) {
+        header(out, name, "histogram", help);
+        for (int shift = MIN_BUCKET_SHIFT; shift <= MAX_BUCKET_SHIFT; shift++) {
+            out.append(name).append("_bucket{le=\"").append(String.format(Locale.ROOT, "%.9f", (1L << shift) / 1e9)).append("\"} ")
+                    .append(histogram.getCountAtOrBelow((1L << shift) - 1)).append('\n');
+        }
+        long count = histogram.getCount();
+        out.append(name).append("_bucket{le=\"+Inf\"} ").append(count).append('\n');
+        out.append(name).append("_sum ").append(String.format(Locale.ROOT, "%.9f", histogram.getSum() / 1e9)).append('\n');
+        out.append(name).append("_count ").append(count).append('\n');
+    }
+
+    /**
+     * A metric read at each scrape.
+     */
+    private static class Sampled {
+        final String name, type, help;
+        final LongSupplier value;
+
+        Sampled(String name, String type, String help, LongSupplier value) {
+            this.name = name;
+            this.type = type;
+            this.help = help;
+            this.value = value;
+        }
+    }
+}
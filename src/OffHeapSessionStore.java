@@ -0,0 +1,513 @@
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * The OffHeapSessionStore class holds the game sessions outside of the heap, for millions of
+ * live games without millions of objects for the garbage collector to trace.
+ *
+ * Sessions live in fixed-size slots of a direct ByteBuffer (the slab). They are found through an
+ * open-addressing index keyed by the 128 bits of their UUID: a single int[] whose entries are slot
+ * numbers, probed linearly and kept free of tombstones by backward-shift deletion. Slots never
+ * move while their session lives; get() returns a small SessionData view over the slot.
+ *
+ * The index is guarded by a StampedLock: lookups are optimistic and only take the read lock
+ * when they raced with a writer. When the slab is full, the least recently active of a few slots
+ * taken from a clock hand is evicted. A slot only changes hands under the write lock, so the
+ * state of a session is written under the shared read lock, once its key is checked again.
+ */
+public class OffHeapSessionStore implements SessionStore {
+    // Slot layout, in bytes
+    private static final int MSB = 0, LSB = 8, LAST_ACTIVITY = 16, GUESSES = 24, COLOURS = 48,
+            SECRET = 56, ATTEMPT = 60, STATUS = 61, USED = 62, CHANGED = 63;
+    private static final int SLOT_SIZE = 64;
+    private static final int EVICTION_SAMPLES = 16;
+
+    private final ByteBuffer slab;
+    private final int maxSessions;
+    private final int[] index; // Slot number + 1, 0 for an empty entry
+    private final int mask;
+    private final long seed = ThreadLocalRandom.current().nextLong(); // Session IDs are chosen by clients
+    private final StampedLock lock = new StampedLock();
+
+    // Guarded by the write lock
+    private final int[] freeSlots;
+    private int freeCount;
+    private int clockHand = 0;
+
+    // Metrics
+    private volatile int size = 0;
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    /**
+     * Allocates a store holding at most maxSessions sessions.
+     *
+     * @param maxSessions the maximum number of live sessions
+     */
+    public OffHeapSessionStore(int maxSessions) {
+        if (maxSessions < 1 || maxSessions > Integer.MAX_VALUE / SLOT_SIZE)
+            throw new IllegalArgumentException("Cannot hold " + maxSessions + " sessions off heap");
+
+        this.maxSessions = maxSessions;
+        this.slab = ByteBuffer.allocateDirect(maxSessions * SLOT_SIZE);
+
+        // The index is kept at most half full, so that probe sequences stay short
+        int capacity = Integer.highestOneBit(Math.max(2, maxSessions * 2 - 1)) << 1;
+        this.index = new int[capacity];
+        this.mask = capacity - 1;
+
+        this.freeSlots = new int[maxSessions];
+        for (int i = 0; i < maxSessions; i++) freeSlots[i] = maxSessions - 1 - i; // Slot 0 is used first
+        this.freeCount = maxSessions;
+    }
+
+    // Getters
+    @Override public int size() { return size; }
+    @Override public int getMaxSessions() { return maxSessions; }
+    @Override public long getCreatedCount() { return created.get(); }
+    @Override public long getExpiredCount() { return expired.get(); }
+    @Override public long getEvictedCount() { return evicted.get(); }
+
+    @Override
+    public SessionData get(String id) {
+        int slot = find(id);
+        return slot == -1 ? null : new Session(slot, slab.getLong(slot * SLOT_SIZE + MSB), slab.getLong(slot * SLOT_SIZE + LSB));
+    }
+
+    @Override
+    public boolean contains(String id) { return find(id) != -1; }
+
+    /**
+     * Adds or replaces a session: its state is copied into a slot.
+     * The session given must not be used afterwards, but the view over the slot returned.
+     *
+     * @param id      the session ID, a UUID
+     * @param session the session
+     * @return a view over the slot of the session
+     */
+    @Override
+    public SessionData put(String id, SessionData session) {
+        if (!isUuid(id)) throw new IllegalArgumentException("Session IDs of the off-heap store are UUIDs: " + id);
+        long msb = uuidBits(id, 0);
+        long lsb = uuidBits(id, 19);
+        int slot = insert(msb, lsb, session);
+        created.incrementAndGet();
+        return new Session(slot, msb, lsb);
+    }
+
+    @Override
+    public void restore(long msb, long lsb, SessionData session) { insert(msb, lsb, session); }
+
+    /**
+     * Copies a session into its slot, taking a free one for a new session.
+     *
+     * @return the slot of the session
+     */
+    private int insert(long msb, long lsb, SessionData session) {
+        long stamp = lock.writeLock();
+        try {
+            int entry = probe(msb, lsb);
+            int slot;
+            if (index[entry] != 0) slot = index[entry] - 1; // Replace the session in place
+            else {
+                if (freeCount == 0) {
+                    evictOne();
+                    entry = probe(msb, lsb); // The eviction may have shifted the index
+                }
+                slot = freeSlots[--freeCount];
+                index[entry] = slot + 1;
+                size++;
+            }
+            write(slot, msb, lsb, session);
+            return slot;
+        }
+        finally { lock.unlockWrite(stamp); }
+    }
+
+    /**
+     * Records an activity on a session. The slot is written under the read lock, shared with the
+     * other requests, so that it cannot be given to another session in between.
+     *
+     * @param id the session ID
+     */
+    @Override
+    public void touch(String id) {
+        if (!isUuid(id)) return;
+        long msb = uuidBits(id, 0);
+        long lsb = uuidBits(id, 19);
+
+        long stamp = lock.readLock();
+        try {
+            int slot = index[probe(msb, lsb)] - 1;
+            if (slot == -1) return;
+            slab.putLong(slot * SLOT_SIZE + LAST_ACTIVITY, System.currentTimeMillis());
+            slab.put(slot * SLOT_SIZE + CHANGED, (byte) 1);
+        }
+        finally { lock.unlockRead(stamp); }
+    }
+
+    @Override
+    public void remove(String id) {
+        if (!isUuid(id)) return;
+        long msb = uuidBits(id, 0);
+        long lsb = uuidBits(id, 19);
+
+        long stamp = lock.writeLock();
+        try {
+            int entry = probe(msb, lsb);
+            if (index[entry] != 0) removeEntry(entry);
+        }
+        finally { lock.unlockWrite(stamp); }
+    }
+
+    /**
+     * Walks the sessions by scanning the slab, without the lock. A session removed while it is
+     * visited is skipped, as its view fails to read from a slot it no longer holds.
+     *
+     * @param changedOnly true to only walk the sessions changed since they were last walked
+     * @param visitor     the receiver of the sessions
+     */
+    @Override
+    public void forEach(boolean changedOnly, Visitor visitor) {
+        for (int slot = 0; slot < maxSessions; slot++) {
+            int base = slot * SLOT_SIZE;
+            if (slab.get(base + USED) == 0 || (changedOnly && slab.get(base + CHANGED) == 0)) continue;
+            slab.put(base + CHANGED, (byte) 0);
+            long msb = slab.getLong(base + MSB);
+            long lsb = slab.getLong(base + LSB);
+            try { visitor.visit(msb, lsb, new Session(slot, msb, lsb)); }
+            catch (IllegalStateException e) { continue; } // Removed while visited
+        }
+    }
+
+    /**
+     * Removes the expired sessions. The slab is scanned without the lock;
+     * the lock is only taken to remove a session, after checking it again.
+     *
+     * @return the number of sessions removed
+     */
+    @Override
+    public int sweep() {
+        int removed = 0;
+        long now = System.currentTimeMillis();
+        for (int slot = 0; slot < maxSessions; slot++) {
+            int base = slot * SLOT_SIZE;
+            if (slab.get(base + USED) == 0 || !isExpired(slab.getLong(base + LAST_ACTIVITY), now)) continue;
+
+            long stamp = lock.writeLock();
+            try {
+                if (slab.get(base + USED) == 0 || !isExpired(slab.getLong(base + LAST_ACTIVITY), now)) continue;
+                removeEntry(probe(slab.getLong(base + MSB), slab.getLong(base + LSB)));
+                removed++;
+            }
+            finally { lock.unlockWrite(stamp); }
+        }
+        expired.addAndGet(removed);
+        return removed;
+    }
+
+
+    // INDEX ------------------------------------------------------------
+    /**
+     * Looks a session up, optimistically first.
+     *
+     * @return the slot of the session, or -1
+     */
+    private int find(String id) {
+        if (!isUuid(id)) return -1;
+        long msb = uuidBits(id, 0);
+        long lsb = uuidBits(id, 19);
+
+        long stamp = lock.tryOptimisticRead();
+        int entry = probe(msb, lsb);
+        int slot = index[entry] - 1;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try { slot = index[probe(msb, lsb)] - 1; }
+            finally { lock.unlockRead(stamp); }
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the index entry holding the key, or the empty entry where it would be inserted.
+     * May return garbage when racing with a writer: optimistic callers validate afterwards.
+     */
+    private int probe(long msb, long lsb) {
+        int entry = hash(msb, lsb) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            int slot = index[entry] - 1;
+            if (slot < 0 || slot >= maxSessions) return entry;
+            int base = slot * SLOT_SIZE;
+            if (slab.getLong(base + MSB) == msb && slab.getLong(base + LSB) == lsb) return entry;
+            entry = (entry + 1) & mask;
+        }
+        return entry;
+    }
+
+    /**
+     * Frees the slot of an entry, and shifts back the entries that follow it in
+     * the same cluster, so that no lookup ever has to skip a deleted entry.
+     */
+    private void removeEntry(int entry) {
+        int slot = index[entry] - 1;
+        slab.put(slot * SLOT_SIZE + USED, (byte) 0);
+        freeSlots[freeCount++] = slot;
+        size--;
+
+        int hole = entry;
+        int next = (entry + 1) & mask;
+        while (index[next] != 0) {
+            int base = (index[next] - 1) * SLOT_SIZE;
+            int home = hash(slab.getLong(base + MSB), slab.getLong(base + LSB)) & mask;
+            // Move the entry into the hole unless its home lies cyclically in (hole, next]
+            boolean stays = hole <= next ? (hole < home && home <= next) : (hole < home || home <= next);
+            if (!stays) {
+                index[hole] = index[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        index[hole] = 0;
+    }
+
+    /**
+     * Evicts the least recently active of the next sessions under the clock hand.
+     */
+    private void evictOne() {
+        int victim = -1;
+        long oldest = Long.MAX_VALUE;
+        for (int i = 0; i < EVICTION_SAMPLES; i++) {
+            int base = clockHand * SLOT_SIZE;
+            long lastActivity = slab.getLong(base + LAST_ACTIVITY);
+            if (slab.get(base + USED) != 0 && lastActivity < oldest) {
+                oldest = lastActivity;
+                victim = clockHand;
+            }
+            clockHand = (clockHand + 1) % maxSessions;
+        }
+        if (victim == -1) return; // Cannot happen when the slab is full
+        int base = victim * SLOT_SIZE;
+        removeEntry(probe(slab.getLong(base + MSB), slab.getLong(base + LSB)));
+        evicted.incrementAndGet();
+    }
+
+    private int hash(long msb, long lsb) {
+        long h = mix(msb ^ seed) ^ mix(lsb);
+        return (int) (h ^ (h >>> 32));
+    }
+
+
+    // HELPERS METHODS ------------------------------------------------------------
+    private void write(int slot, long msb, long lsb, SessionData session) {
+        int base = slot * SLOT_SIZE;
+        slab.putLong(base + MSB, msb);
+        slab.putLong(base + LSB, lsb);
+        slab.putLong(base + LAST_ACTIVITY, session.getLastActivityTime());
+        for (int row = 0; row < SessionData.ROWS; row++) slab.putInt(base + GUESSES + 4 * row, session.getGuess(row));
+        long colours = 0;
+        for (int row = 0; row < SessionData.ROWS; row++) colours |= (long) session.getColours(row) << (10 * row);
+        slab.putLong(base + COLOURS, colours);
+        slab.putInt(base + SECRET, session.getSecret());
+        slab.put(base + ATTEMPT, (byte) session.getAttempt());
+        slab.put(base + STATUS, session.getStatusCode());
+        slab.put(base + USED, (byte) 1);
+        slab.put(base + CHANGED, (byte) 1);
+    }
+
+    private static boolean isExpired(long lastActivity, long now) {
+        return now - lastActivity > SessionData.getSessionTimeoutMillis();
+    }
+
+    /**
+     * Checks that an ID is a UUID in its canonical lower case form.
+     */
+    private static boolean isUuid(String id) {
+        if (id == null || id.length() != 36) return false;
+        for (int i = 0; i < 36; i++) {
+            char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') return false;
+            }
+            else if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads 64 bits of a UUID: its first half from 0, its second half from 19.
+     */
+    private static long uuidBits(String id, int from) {
+        long bits = 0;
+        for (int i = from, digits = 0; digits < 16; i++) {
+            char c = id.charAt(i);
+            if (c == '-') continue;
+            bits = (bits << 4) | Character.digit(c, 16);
+            digits++;
+        }
+        return bits;
+    }
+
+    /**
+     * The finalizer of MurmurHash3, spreading every bit of the input over the output.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+
+    // SESSION VIEW ------------------------------------------------------------
+    /**
+     * A session whose state lives in a slot of the slab. A view is cheap and short lived:
+     * it is created by every get() and dropped at the end of the request.
+     * If its session is removed meanwhile, the view stops writing, as the slot may hold another
+     * session, and its getters throw an IllegalStateException rather than return another's state.
+     * Reads are optimistic: the slot is only read again under the read lock after racing with a writer.
+     */
+    private class Session extends SessionData {
+        private final int base;
+        private final long msb, lsb;
+
+        Session(int slot, long msb, long lsb) {
+            this.base = slot * SLOT_SIZE;
+            this.msb = msb;
+            this.lsb = lsb;
+        }
+
+        private boolean isCurrent() {
+            return slab.get(base + USED) != 0 && slab.getLong(base + MSB) == msb && slab.getLong(base + LSB) == lsb;
+        }
+
+        @Override public int getSecret() { return readInt(SECRET); }
+        @Override public int getGuess(int row) { return readInt(GUESSES + 4 * row); }
+        @Override public int getColours(int row) { return (int) (readLong(COLOURS) >>> (10 * row)) & 0x3FF; }
+        @Override public byte getStatusCode() { return readByte(STATUS); }
+        @Override public int getAttempt() { return readByte(ATTEMPT); }
+        @Override public long getLastActivityTime() { return readLong(LAST_ACTIVITY); }
+
+        @Override protected void setSecret(int secret) {
+            long stamp = lockIfCurrent();
+            if (stamp == 0) return;
+            try {
+                slab.putInt(base + SECRET, secret);
+                markChanged();
+            }
+            finally { lock.unlockRead(stamp); }
+        }
+        @Override protected void setGuess(int row, int guess) {
+            long stamp = lockIfCurrent();
+            if (stamp == 0) return;
+            try {
+                slab.putInt(base + GUESSES + 4 * row, guess);
+                markChanged();
+            }
+            finally { lock.unlockRead(stamp); }
+        }
+        @Override protected void setColours(int row, int pattern) {
+            long stamp = lockIfCurrent();
+            if (stamp == 0) return;
+            try {
+                long colours = slab.getLong(base + COLOURS);
+                int shift = 10 * row;
+                slab.putLong(base + COLOURS, (colours & ~(0x3FFL << shift)) | ((long) pattern << shift));
+                markChanged();
+            }
+            finally { lock.unlockRead(stamp); }
+        }
+        @Override public void setStatusCode(byte status) {
+            long stamp = lockIfCurrent();
+            if (stamp == 0) return;
+            try {
+                slab.put(base + STATUS, status);
+                markChanged();
+            }
+            finally { lock.unlockRead(stamp); }
+        }
+        @Override protected void setAttempt(int attempt) {
+            long stamp = lockIfCurrent();
+            if (stamp == 0) return;
+            try {
+                slab.put(base + ATTEMPT, (byte) attempt);
+                markChanged();
+            }
+            finally { lock.unlockRead(stamp); }
+        }
+        @Override protected void setLastActivityTime(long time) {
+            long stamp = lockIfCurrent();
+            if (stamp == 0) return;
+            try {
+                slab.putLong(base + LAST_ACTIVITY, time);
+                markChanged();
+            }
+            finally { lock.unlockRead(stamp); }
+        }
+        @Override protected boolean clearChanged() {
+            if (slab.get(base + CHANGED) == 0) return false;
+            slab.put(base + CHANGED, (byte) 0);
+            return true;
+        }
+
+        /**
+         * Takes the read lock if the slot still holds the session: it then keeps it until unlocked.
+         *
+         * @return the stamp, 0 if the session was removed
+         */
+        private long lockIfCurrent() {
+            long stamp = lock.readLock();
+            if (isCurrent()) return stamp;
+            lock.unlockRead(stamp);
+            return 0;
+        }
+
+        /**
+         * Reads a field of the slot, optimistically first.
+         *
+         * @throws IllegalStateException if the session was removed
+         */
+        private int readInt(int offset) {
+            long stamp = lock.tryOptimisticRead();
+            int value = slab.getInt(base + offset);
+            if (isCurrent() && lock.validate(stamp)) return value;
+            stamp = lockCurrent();
+            try { return slab.getInt(base + offset); }
+            finally { lock.unlockRead(stamp); }
+        }
+        private long readLong(int offset) {
+            long stamp = lock.tryOptimisticRead();
+            long value = slab.getLong(base + offset);
+            if (isCurrent() && lock.validate(stamp)) return value;
+            stamp = lockCurrent();
+            try { return slab.getLong(base + offset); }
+            finally { lock.unlockRead(stamp); }
+        }
+        private byte readByte(int offset) {
+            long stamp = lock.tryOptimisticRead();
+            byte value = slab.get(base + offset);
+            if (isCurrent() && lock.validate(stamp)) return value;
+            stamp = lockCurrent();
+            try { return slab.get(base + offset); }
+            finally { lock.unlockRead(stamp); }
+        }
+
+        private long lockCurrent() {
+            long stamp = lockIfCurrent();
+            if (stamp == 0) throw new IllegalStateException("Session " + new UUID(msb, lsb) + " was removed from the store");
+            return stamp;
+        }
+
+        /**
+         * Marks the session as changed, once the field is written: a snapshot clearing the
+         * mark in between reads the new value or sees the mark again.
+         */
+        private void markChanged() { slab.put(base + CHANGED, (byte) 1); }
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * The PackedWord class encodes five-letter words as 25-bit integers: 5 bits per letter,
+ * 'a' = 1 to 'z' = 26, the first letter in the lowest bits. 0 stands for no word.
+ * Colour patterns are packed the same way on 10 bits: 2 bits per letter, 'B' = 1, 'Y' = 2, 'G' = 3.
+ */
+public class PackedWord {
+    public static final int NONE = 0;
+    public static final int LETTERS = 5;
+    public static final int BITS_PER_LETTER = 5;
+    public static final int BITS_PER_COLOUR = 2;
+
+    private static final char[] COLOURS = { ' ', 'B', 'Y', 'G' };
+
+    /**
+     * Packs a word of five letters, in any case.
+     *
+     * @param word the word to pack
+     * @return the packed word, or NONE if the word is not made of five letters
+     */
+    public static int encode(String word) {
+        if (word == null || word.length() != LETTERS) return NONE;
+        int packed = 0;
+        for (int i = 0; i < LETTERS; i++) {
+            int letter = (word.charAt(i) | 0x20) - 'a';
+            if (letter < 0 || letter >= 26) return NONE;
+            packed |= (letter + 1) << (BITS_PER_LETTER * i);
+        }
+        return packed;
+    }
+
+    /**
+     * Packs a word of five ASCII letters, in any case, straight from bytes such as a request buffer.
+     *
+     * @param bytes the bytes holding the word
+     * @param from  the offset of the first letter
+     * @return the packed word, or NONE if the five bytes are not all letters
+     */
+    public static int encode(byte[] bytes, int from) {
+        if (from < 0 || from + LETTERS > bytes.length) return NONE;
+        int packed = 0;
+        for (int i = 0; i < LETTERS; i++) {
+            int letter = (bytes[from + i] | 0x20) - 'a';
+            if (letter < 0 || letter >= 26) return NONE;
+            packed |= (letter + 1) << (BITS_PER_LETTER * i);
+        }
+        return packed;
+    }
+
+    /**
+     * Unpacks a word into lower case letters.
+     *
+     * @param packed the packed word
+     * @return the word, or an empty String for NONE
+     */
+    public static String decode(int packed) {
+        if (packed == NONE) return "";
+        char[] word = new char[LETTERS];
+        for (int i = 0; i < LETTERS; i++) word[i] = (char) ('a' - 1 + letterAt(packed, i));
+        return new String(word);
+    }
+
+    /**
+     * Returns a letter of a packed word.
+     *
+     * @param packed the packed word
+     * @param i      the position of the letter, from 0
+     * @return the letter, from 1 ('a') to 26 ('z')
+     */
+    public static int letterAt(int packed, int i) { return (packed >>> (BITS_PER_LETTER * i)) & 0x1F; }
+
+    /**
+     * Packs a colour pattern such as "GYBBG".
+     *
+     * @param pattern the pattern to pack
+     * @return the packed pattern, or NONE if the pattern is not made of five colours
+     */
+    public static int encodeColours(String pattern) {
+        if (pattern == null || pattern.length() != LETTERS) return NONE;
+        int packed = 0;
+        for (int i = 0; i < LETTERS; i++) {
+            int colour;
+            switch (pattern.charAt(i)) {
+                case 'B': colour = 1; break;
+                case 'Y': colour = 2; break;
+                case 'G': colour = 3; break;
+                default: return NONE;
+            }
+            packed |= colour << (BITS_PER_COLOUR * i);
+        }
+        return packed;
+    }
+
+    /**
+     * Unpacks a colour pattern.
+     *
+     * @param packed the packed pattern
+     * @return the pattern, or an empty String for NONE
+     */
+    public static String decodeColours(int packed) {
+        if (packed == NONE) return "";
+        char[] pattern = new char[LETTERS];
+        for (int i = 0; i < LETTERS; i++) pattern[i] = COLOURS[(packed >>> (BITS_PER_COLOUR * i)) & 0x3];
+        return new String(pattern);
+    }
+}
@@ -0,0 +1,85 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The PageTemplate class is a page compiled once into pre-encoded UTF-8 segments and named slots.
+ * Slots are written as {{name}} in the source text. Rendering appends the static segments
+ * to a ResponseBuffer as they are and asks a SlotWriter to fill each slot, so that only
+ * the dynamic parts of the page are encoded for each response.
+ */
+public class PageTemplate {
+    private static final String SLOT_OPEN = "{{";
+    private static final String SLOT_CLOSE = "}}";
+
+    /**
+     * Writes the dynamic content of the slots of a template.
+     */
+    public interface SlotWriter {
+        /**
+         * Appends the content of a slot to the response.
+         *
+         * @param slot the name of the slot
+         * @param out  the response to append to
+         */
+        void writeSlot(String slot, ResponseBuffer out);
+    }
+
+    private final byte[][] segments; // segments[i] precedes slots[i], the last one ends the page
+    private final String[] slots;
+
+    private PageTemplate(byte[][] segments, String[] slots) {
+        this.segments = segments;
+        this.slots = slots;
+    }
+
+    /**
+     * Splits a page into static segments and slots.
+     *
+     * @param source the text of the page, holding {{name}} slots
+     * @return the compiled template
+     */
+    public static PageTemplate compile(String source) {
+        List<byte[]> segments = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+
+        int pos = 0;
+        int open;
+        while ((open = source.indexOf(SLOT_OPEN, pos)) != -1) {
+            int close = source.indexOf(SLOT_CLOSE, open);
+            if (close == -1) throw new IllegalArgumentException("Unterminated slot at " + open);
+
+            segments.add(source.substring(pos, open).getBytes(StandardCharsets.UTF_8));
+            slots.add(source.substring(open + SLOT_OPEN.length(), close).intern());
+            pos = close + SLOT_CLOSE.length();
+        }
+        segments.add(source.substring(pos).getBytes(StandardCharsets.UTF_8));
+
+        return new PageTemplate(segments.toArray(new byte[0][]), slots.toArray(new String[0]));
+    }
+
+    /**
+     * Appends the page to the response.
+     *
+     * @param out    the response to append to
+     * @param writer the writer of the slots
+     */
+    public void render(ResponseBuffer out, SlotWriter writer) {
+        for (int i = 0; i < slots.length; i++) {
+            out.add(segments[i]);
+            writer.writeSlot(slots[i], out);
+        }
+        out.add(segments[slots.length]);
+    }
+
+    /**
+     * Returns the number of bytes of the static segments, that is the size of the page with empty slots.
+     *
+     * @return the size of the static part of the page
+     */
+    public int getStaticLength() {
+        int length = 0;
+        for (byte[] segment : segments) length += segment.length;
+        return length;
+    }
+}
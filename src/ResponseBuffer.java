@@ -0,0 +1,350 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * The ResponseBuffer class holds the bytes of one or more HTTP responses as an ordered list of segments.
+ * A segment is a slice of a byte array: either a shared, pre-encoded constant (page template,
+ * header names...) or a slice of the buffer's own blocks, where dynamic text is encoded.
+ * Responses are sent with a single gathering write, without ever being copied into one array.
+ *
+ * Blocks are never reallocated, so a segment stays valid until the buffer is cleared.
+ * A buffer belongs to one connection and is reused for all its responses.
+ */
+public class ResponseBuffer {
+    private static final int BLOCK_SIZE = 4096;
+    private static final byte[] CRLF = { '\r', '\n' };
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[][] CHUNK_HEADERS = new byte[WordleServer.getMaxChunckSize() + 1][];
+    static {
+        for (int size = 1; size < CHUNK_HEADERS.length; size++)
+            CHUNK_HEADERS[size] = (Integer.toHexString(size) + "\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // Segments: arrays[i][offsets[i], offsets[i] + lengths[i])
+    private byte[][] arrays = new byte[64][];
+    private int[] offsets = new int[64];
+    private int[] lengths = new int[64];
+    private int count = 0;
+
+    // Storage for the dynamic bytes
+    private final List<byte[]> blocks = new ArrayList<>();
+    private int blockIndex = 0;
+    private int blockPos = 0;
+
+    /**
+     * Forgets all the segments. The blocks are kept for the next responses.
+     */
+    public void clear() {
+        Arrays.fill(arrays, 0, count, null);
+        this.count = 0;
+        this.blockIndex = 0;
+        this.blockPos = 0;
+    }
+
+    /**
+     * Forgets the segments from the given mark to the end, such as the body of a response to a
+     * HEAD request. Their bytes stay in the blocks until the buffer is cleared.
+     *
+     * @param from the mark of the first segment to forget
+     */
+    public void truncate(int from) {
+        Arrays.fill(arrays, from, count, null);
+        this.count = from;
+    }
+
+    public boolean isEmpty() { return count == 0; }
+
+    /**
+     * Returns the number of segments, to be used as a mark delimiting a part of the response.
+     *
+     * @return the current number of segments
+     */
+    public int size() { return count; }
+
+    /**
+     * Returns the number of bytes held by the segments from the given mark to the end.
+     *
+     * @param from the mark
+     * @return the number of bytes
+     */
+    public int length(int from) {
+        int length = 0;
+        for (int i = from; i < count; i++) length += lengths[i];
+        return length;
+    }
+
+    public int length() { return length(0); }
+
+
+    // APPENDING ------------------------------------------------------------
+    /**
+     * Appends a shared array as a segment. The array must not be modified afterwards.
+     *
+     * @param bytes the bytes to append
+     */
+    public void add(byte[] bytes) { add(bytes, 0, bytes.length); }
+
+    public void add(byte[] bytes, int offset, int length) {
+        if (length == 0) return;
+        ensureSegments(count + 1);
+        arrays[count] = bytes;
+        offsets[count] = offset;
+        lengths[count] = length;
+        count++;
+    }
+
+    /**
+     * Appends a String encoded in UTF-8, writing ASCII characters directly into the blocks.
+     *
+     * @param text the text to append
+     */
+    public void append(String text) {
+        int start = 0;
+        int length = text.length();
+        while (start < length) {
+            byte[] block = currentBlock();
+            int begin = blockPos;
+            int i = start;
+            while (i < length && blockPos < block.length) {
+                char c = text.charAt(i);
+                if (c >= 0x80) break;
+                block[blockPos++] = (byte) c;
+                i++;
+            }
+            extendOrAdd(block, begin, blockPos - begin);
+            start = i;
+
+            // Non ASCII characters are rare: encode the run of them on its own
+            if (start < length && text.charAt(start) >= 0x80) {
+                int end = start;
+                while (end < length && text.charAt(end) >= 0x80) end++;
+                add(text.substring(start, end).getBytes(StandardCharsets.UTF_8));
+                start = end;
+            }
+        }
+    }
+
+    /**
+     * Appends the decimal representation of an integer.
+     *
+     * @param value the value to append
+     */
+    public void append(int value) { append(Integer.toString(value)); }
+
+    /**
+     * Reserves a segment to be filled later, typically the headers, whose
+     * Content-Length is only known once the body has been appended.
+     *
+     * @return the index of the reserved segment
+     */
+    public int reserve() {
+        ensureSegments(count + 1);
+        arrays[count] = CRLF;
+        offsets[count] = 0;
+        lengths[count] = 0;
+        return count++;
+    }
+
+    /**
+     * Fills a reserved segment with an ASCII text.
+     *
+     * @param slot the index returned by reserve()
+     * @param text the text of the segment
+     */
+    public void fill(int slot, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        arrays[slot] = bytes;
+        offsets[slot] = 0;
+        lengths[slot] = bytes.length;
+    }
+
+    /**
+     * Frames the segments from the given mark to the end with chunked transfer encoding.
+     * Chunks are slices of the existing segments: no byte of the body is copied.
+     *
+     * @param from      the mark of the first segment of the body
+     * @param chunkSize the maximum size of a chunk
+     */
+    public void chunk(int from, int chunkSize) {
+        // Take the body segments out, then put them back between chunk headers
+        int bodyCount = count - from;
+        byte[][] bodyArrays = Arrays.copyOfRange(arrays, from, count);
+        int[] bodyOffsets = Arrays.copyOfRange(offsets, from, count);
+        int[] bodyLengths = Arrays.copyOfRange(lengths, from, count);
+        int remaining = length(from);
+        Arrays.fill(arrays, from, count, null);
+        this.count = from;
+
+        int segment = 0;
+        int segmentPos = 0;
+        while (remaining > 0) {
+            int size = Math.min(chunkSize, remaining);
+            add(CHUNK_HEADERS[size]);
+
+            int needed = size;
+            while (needed > 0) {
+                int available = bodyLengths[segment] - segmentPos;
+                int taken = Math.min(available, needed);
+                add(bodyArrays[segment], bodyOffsets[segment] + segmentPos, taken);
+                needed -= taken;
+                segmentPos += taken;
+                if (segmentPos == bodyLengths[segment]) {
+                    segment++;
+                    segmentPos = 0;
+                }
+            }
+            add(CRLF);
+            remaining -= size;
+        }
+        // Send a zero-size chunk to indicate the end of the content
+        add(LAST_CHUNK);
+
+        if (segment < bodyCount && bodyLengths[segment] != segmentPos)
+            throw new IllegalStateException("Chunked body does not match its segments");
+    }
+
+    /**
+     * Replaces the segments from the given mark to the end by their compressed form.
+     * The segments are fed to the deflater as they are, and the compressed bytes
+     * are written into the blocks, after every byte they still refer to.
+     *
+     * @param from     the mark of the first segment to compress
+     * @param header   a header preceding the compressed bytes (gzip), or null
+     * @param deflater a deflater, reset, whose format matches the content encoding
+     * @param crc      a checksum to update with the uncompressed bytes (gzip), or null
+     */
+    public void compress(int from, byte[] header, Deflater deflater, CRC32 crc) {
+        byte[][] inputArrays = Arrays.copyOfRange(arrays, from, count);
+        int[] inputOffsets = Arrays.copyOfRange(offsets, from, count);
+        int[] inputLengths = Arrays.copyOfRange(lengths, from, count);
+        Arrays.fill(arrays, from, count, null);
+        this.count = from;
+        if (header != null) add(header);
+
+        for (int i = 0; i < inputArrays.length; i++) {
+            if (crc != null) crc.update(inputArrays[i], inputOffsets[i], inputLengths[i]);
+            deflater.setInput(inputArrays[i], inputOffsets[i], inputLengths[i]);
+            while (!deflater.needsInput()) deflateInto(deflater);
+        }
+        deflater.finish();
+        while (!deflater.finished()) deflateInto(deflater);
+    }
+
+    /**
+     * Appends bytes by copying them into the blocks, for small arrays that are not kept by the caller.
+     *
+     * @param bytes the bytes to copy
+     */
+    public void copy(byte[] bytes) {
+        int pos = 0;
+        while (pos < bytes.length) {
+            byte[] block = currentBlock();
+            int length = Math.min(bytes.length - pos, block.length - blockPos);
+            System.arraycopy(bytes, pos, block, blockPos, length);
+            extendOrAdd(block, blockPos, length);
+            blockPos += length;
+            pos += length;
+        }
+    }
+
+
+    // WRITING ------------------------------------------------------------
+    /**
+     * Writes every segment to the channel with gathering writes.
+     *
+     * @param channel a blocking channel
+     * @throws IOException if writing fails
+     */
+    public void writeTo(GatheringByteChannel channel) throws IOException {
+        ByteBuffer[] buffers = toByteBuffers();
+        long remaining = length();
+        while (remaining > 0) remaining -= channel.write(buffers);
+    }
+
+    /**
+     * Writes every segment to the stream.
+     *
+     * @param output the stream, preferably buffered
+     * @throws IOException if writing fails
+     */
+    public void writeTo(OutputStream output) throws IOException {
+        for (int i = 0; i < count; i++) output.write(arrays[i], offsets[i], lengths[i]);
+    }
+
+    /**
+     * Wraps the segments into buffers, for gathering writes on a non-blocking channel.
+     *
+     * @return one buffer per segment
+     */
+    public ByteBuffer[] toByteBuffers() {
+        ByteBuffer[] buffers = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) buffers[i] = ByteBuffer.wrap(arrays[i], offsets[i], lengths[i]);
+        return buffers;
+    }
+
+    /**
+     * Copies the segments from the given mark to the end into a single array.
+     *
+     * @param from the mark
+     * @return the bytes of those segments
+     */
+    public byte[] toByteArray(int from) {
+        byte[] bytes = new byte[length(from)];
+        int pos = 0;
+        for (int i = from; i < count; i++) {
+            System.arraycopy(arrays[i], offsets[i], bytes, pos, lengths[i]);
+            pos += lengths[i];
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() { return new String(toByteArray(0), StandardCharsets.UTF_8); }
+
+
+    // HELPERS METHODS ------------------------------------------------------------
+    private byte[] currentBlock() {
+        if (blockIndex < blocks.size() && blockPos == BLOCK_SIZE) {
+            blockIndex++;
+            blockPos = 0;
+        }
+        if (blockIndex == blocks.size()) blocks.add(new byte[BLOCK_SIZE]);
+        return blocks.get(blockIndex);
+    }
+
+    /**
+     * Deflates into the free space of the current block.
+     */
+    private void deflateInto(Deflater deflater) {
+        byte[] block = currentBlock();
+        int begin = blockPos;
+        blockPos += deflater.deflate(block, blockPos, block.length - blockPos);
+        extendOrAdd(block, begin, blockPos - begin);
+    }
+
+    /**
+     * Adds a slice of a block, merging it into the previous segment when they are contiguous.
+     */
+    private void extendOrAdd(byte[] block, int offset, int length) {
+        if (length == 0) return;
+        int last = count - 1;
+        if (last >= 0 && arrays[last] == block && offsets[last] + lengths[last] == offset) lengths[last] += length;
+        else add(block, offset, length);
+    }
+
+    private void ensureSegments(int capacity) {
+        if (capacity <= arrays.length) return;
+        int newCapacity = Math.max(capacity, arrays.length * 2);
+        arrays = Arrays.copyOf(arrays, newCapacity);
+        offsets = Arrays.copyOf(offsets, newCapacity);
+        lengths = Arrays.copyOf(lengths, newCapacity);
+    }
+}
@@ -0,0 +1,112 @@
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * The ResponseCompressor class compresses response bodies with gzip or deflate.
+ * Deflaters hold native memory and are costly to create, so they are pooled and reused.
+ * Gzip is produced with a raw deflater wrapped in a header and a CRC32 trailer written by hand,
+ * which lets the deflater read the body straight from the segments of a ResponseBuffer.
+ */
+public class ResponseCompressor {
+    /**
+     * The content codings the server can produce, from the most to the least preferred.
+     */
+    public enum Encoding {
+        GZIP("gzip"), DEFLATE("deflate"), IDENTITY("identity");
+
+        private final String token;
+        Encoding(String token) { this.token = token; }
+
+        // Getters
+        public String getToken() { return token; }
+    }
+
+    // ID1 ID2 CM FLG MTIME(4) XFL OS(unknown)
+    private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+    private static final int POOL_SIZE = 64;
+    private static final Queue<Deflater> RAW_DEFLATERS = new ConcurrentLinkedQueue<>();  // gzip
+    private static final Queue<Deflater> ZLIB_DEFLATERS = new ConcurrentLinkedQueue<>(); // deflate
+
+    /**
+     * Chooses the encoding of a response from the codings accepted by the client.
+     *
+     * @param acceptsGzip    true if the client accepts gzip
+     * @param acceptsDeflate true if the client accepts deflate
+     * @return the preferred encoding accepted by the client
+     */
+    public static Encoding negotiate(boolean acceptsGzip, boolean acceptsDeflate) {
+        if (acceptsGzip) return Encoding.GZIP;
+        if (acceptsDeflate) return Encoding.DEFLATE;
+        return Encoding.IDENTITY;
+    }
+
+    /**
+     * Checks whether a body is worth compressing: below the threshold, the
+     * compression headers and the CPU time outweigh the bytes saved.
+     *
+     * @param length the length of the body
+     * @return true if the body should be compressed
+     */
+    public static boolean isWorthCompressing(int length) { return length >= WordleServer.getCompressionThreshold(); }
+
+    /**
+     * Compresses the segments of a response from the given mark to the end, in place.
+     *
+     * @param out      the response holding the body
+     * @param from     the mark of the first segment of the body
+     * @param encoding GZIP or DEFLATE
+     */
+    public static void compress(ResponseBuffer out, int from, Encoding encoding) {
+        boolean gzip = encoding == Encoding.GZIP;
+        Queue<Deflater> pool = gzip ? RAW_DEFLATERS : ZLIB_DEFLATERS;
+        Deflater deflater = pool.poll();
+        if (deflater == null) deflater = new Deflater(WordleServer.getCompressionLevel(), gzip);
+
+        try {
+            if (!gzip) {
+                out.compress(from, null, deflater, null);
+                return;
+            }
+
+            CRC32 crc = new CRC32();
+            out.compress(from, GZIP_HEADER, deflater, crc);
+            out.copy(gzipTrailer(crc.getValue(), (int) deflater.getBytesRead()));
+        }
+        finally {
+            // The pool is bounded, extra deflaters release their native memory right away
+            deflater.reset();
+            if (pool.size() < POOL_SIZE) pool.offer(deflater);
+            else deflater.end();
+        }
+    }
+
+    /**
+     * Compresses a whole content, for the static assets compressed once at startup.
+     *
+     * @param content  the content to compress
+     * @param encoding GZIP or DEFLATE
+     * @return the compressed content
+     */
+    public static byte[] compress(byte[] content, Encoding encoding) {
+        ResponseBuffer out = new ResponseBuffer();
+        out.add(content);
+        compress(out, 0, encoding);
+        return out.toByteArray(0);
+    }
+
+
+    // HELPERS METHODS ------------------------------------------------------------
+    /**
+     * Builds the end of a gzip member: the CRC32 and the size of the uncompressed data, little endian.
+     */
+    private static byte[] gzipTrailer(long crc, int size) {
+        byte[] trailer = new byte[8];
+        for (int i = 0; i < 4; i++) {
+            trailer[i] = (byte) (crc >> (8 * i));
+            trailer[4 + i] = (byte) (size >> (8 * i));
+        }
+        return trailer;
+    }
+}
@@ -0,0 +1,415 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The SelectorServer class is the non-blocking front end of the Wordle server.
+ * A single event-loop thread accepts connections and reads their bytes as they arrive.
+ * Requests are framed incrementally and only complete requests are handed to the
+ * worker pool running the game logic, so idle or slow clients never hold a thread.
+ * A request that is not received within the request timeout, or pauses for longer than the read
+ * timeout, is answered with 408 and its connection closed.
+ * Connections are persistent: pipelined requests are answered one after the other, in order.
+ */
+public class SelectorServer {
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    private final int port;
+    private final ExecutorService workers;
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private Selector selector;
+
+    public SelectorServer(int port, int workerThreads) {
+        this.port = port;
+        this.workers = Executors.newFixedThreadPool(workerThreads);
+        Metrics.registerPool(workers);
+    }
+
+    /**
+     * Binds the server socket and runs the event loop forever.
+     *
+     * @throws IOException if the server socket cannot be opened or bound
+     */
+    public void run() throws IOException {
+        this.selector = Selector.open();
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        System.out.println("-- Wordle HTTP Server (selector mode) is listening on port " + port + ".");
+
+        long lastSweep = System.currentTimeMillis();
+        while (true) {
+            selector.select(1000);
+
+            // Close the connections that stayed idle for longer than the keep-alive timeout, or are too slow to send their request
+            long now = System.currentTimeMillis();
+            if (now - lastSweep >= 1000) {
+                closeIdleConnections(now);
+                lastSweep = now;
+            }
+
+            // Responses produced by the workers are written by the event loop only
+            Connection ready;
+            while ((ready = pendingWrites.poll()) != null) {
+                if (ready.key.isValid()) ready.key.interestOps(SelectionKey.OP_WRITE);
+            }
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                try {
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) accept(serverChannel);
+                    else if (key.isReadable()) read(key);
+                    else if (key.isWritable()) write(key);
+                } catch (IOException e) {
+                    close(key);
+                }
+            }
+        }
+    }
+
+
+    // EVENT HANDLERS ------------------------------------------------------------
+    /**
+     * Accepts a pending connection and registers it for reading.
+     *
+     * @param serverChannel the listening channel
+     * @throws IOException if the connection cannot be configured
+     */
+    private void accept(ServerSocketChannel serverChannel) throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) return;
+
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(key));
+        Metrics.connectionOpened();
+    }
+
+    /**
+     * Reads the available bytes of a connection and dispatches the request once it is complete.
+     *
+     * @param key the selection key of the readable connection
+     * @throws IOException if reading from the channel fails
+     */
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+
+        readBuffer.clear();
+        int read = channel.read(readBuffer);
+        if (read == -1) {
+            close(key);
+            return;
+        }
+        readBuffer.flip();
+        connection.lastActivity = System.currentTimeMillis();
+        if (connection.requestStart == 0) connection.requestStart = connection.lastActivity;
+
+        if (!connection.append(readBuffer)) {
+            Log.warn("Request exceeds " + WordleServer.getMaxRequestSize() + " bytes, closing connection.");
+            close(key);
+            return;
+        }
+
+        if (connection.isRequestComplete()) dispatch(connection);
+    }
+
+    /**
+     * Hands a complete request to the worker pool.
+     * The connection is not read while its request is being processed.
+     *
+     * @param connection the connection holding a complete request
+     */
+    private void dispatch(Connection connection) {
+        connection.key.interestOps(0);
+        workers.execute(() -> process(connection));
+    }
+
+    /**
+     * Writes as much of the pending response as the channel accepts.
+     *
+     * @param key the selection key of the writable connection
+     * @throws IOException if writing to the channel fails
+     */
+    private void write(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+
+        ByteBuffer[] response = connection.response;
+        channel.write(response);
+        if (response.length > 0 && response[response.length - 1].hasRemaining()) return;
+
+        connection.lastActivity = System.currentTimeMillis();
+        if (!connection.keepAlive) {
+            close(key);
+            return;
+        }
+
+        // Move on to the next request, which may already be buffered (pipelining)
+        connection.nextRequest();
+        if (connection.isRequestComplete()) dispatch(connection);
+        else key.interestOps(SelectionKey.OP_READ);
+    }
+
+    /**
+     * Runs the game logic on a complete request and hands the response back to the event loop.
+     * Executed on a worker thread.
+     *
+     * @param connection the connection holding a complete request
+     */
+    private void process(Connection connection) {
+        try {
+            ByteArrayInputStream input = new ByteArrayInputStream(connection.request, 0, connection.scanPos);
+            connection.keepAlive = connection.httpHandler.handle(input);
+        }
+        catch (IOException e) {
+            Log.error("Request failed", e);
+            connection.keepAlive = false;
+        }
+        catch (RuntimeException e) {
+            Log.error("Request failed", e);
+            connection.httpHandler.sendServerError();
+            connection.keepAlive = false;
+        }
+        finally {
+            // The segments of the response are written as they are, with gathering writes.
+            // Always handed back, or the connection would wait for its response forever
+            Metrics.countBytesWritten(connection.httpHandler.getResponse().length());
+            connection.response = connection.httpHandler.getResponse().toByteBuffers();
+            pendingWrites.add(connection);
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Closes the connections waiting for a request for longer than the keep-alive timeout,
+     * and answers 408 to those receiving a request for longer than the request timeout,
+     * or receiving nothing of it for longer than the read timeout.
+     * Connections whose request is being processed or written are left alone.
+     *
+     * @param now the current time in milliseconds
+     */
+    private void closeIdleConnections(long now) {
+        for (SelectionKey key : selector.keys()) {
+            if (!key.isValid() || !(key.attachment() instanceof Connection) || key.interestOps() != SelectionKey.OP_READ) continue;
+            Connection connection = (Connection) key.attachment();
+            if (connection.requestStart == 0) {
+                if (now - connection.lastActivity > WordleServer.getKeepAliveTimeout()) close(key);
+            }
+            else if (now - connection.requestStart > WordleServer.getRequestTimeout() || now - connection.lastActivity > WordleServer.getReadTimeout())
+                rejectSlowRequest(key, connection);
+        }
+    }
+
+    /**
+     * Answers 408 to a request that was not received in time and closes its connection.
+     * The response is written once, without waiting for the client to read it.
+     *
+     * @param key        the selection key of the connection
+     * @param connection the connection receiving the request
+     */
+    private void rejectSlowRequest(SelectionKey key, Connection connection) {
+        Log.warn("Request not received in time ::" + connection.length + " bytes, closing connection.");
+        ResponseBuffer response = connection.httpHandler.getResponse();
+        connection.httpHandler.sendRequestTimeout();
+        Metrics.countBytesWritten(response.length());
+        try { ((SocketChannel) key.channel()).write(response.toByteBuffers()); }
+        catch (IOException e) { /* Closed below anyway */ }
+        close(key);
+    }
+
+    /**
+     * Cancels the key and closes its channel.
+     *
+     * @param key the selection key of the connection to close
+     */
+    private void close(SelectionKey key) {
+        if (key.attachment() instanceof Connection && key.channel().isOpen()) Metrics.connectionClosed();
+        key.cancel();
+        try { key.channel().close(); }
+        catch (IOException e) { Log.error("Could not close a connection", e); }
+    }
+
+
+    // CONNECTION STATE ------------------------------------------------------------
+    /**
+     * Per-connection state: the bytes received so far and the incremental framing of the request.
+     * The framing only looks at each byte once, whatever the number of reads the request arrives in.
+     */
+    private static class Connection {
+        private static final int HEAD = 0, BODY = 1, CHUNK_SIZE = 2, CHUNK_DATA = 3, TRAILER = 4, COMPLETE = 5;
+
+        private final SelectionKey key;
+        private final HttpHandler httpHandler = new HttpHandler(WordleServer.getServerID());
+        private final HttpRequestParser parser = new HttpRequestParser();
+        private long lastActivity = System.currentTimeMillis();
+        private long requestStart = 0; // When the first byte of the request was received, 0 before
+        private boolean keepAlive = true;
+        private byte[] request = new byte[1024];
+        private int length = 0;
+        private int scanPos = 0;
+        private int state = HEAD;
+        private int remaining = 0; // Bytes of body (or of the current chunk) still expected
+        private ByteBuffer[] response;
+
+        Connection(SelectionKey key) { this.key = key; }
+
+        /**
+         * Appends the bytes of the buffer to the request and advances the framing.
+         *
+         * @param buffer the bytes just read from the channel
+         * @return false if the request exceeds the maximum request size, true otherwise
+         */
+        boolean append(ByteBuffer buffer) {
+            int count = buffer.remaining();
+            int maxRequestSize = WordleServer.getMaxRequestSize();
+            if (length + count > maxRequestSize) return false;
+            if (length + count > request.length)
+                request = Arrays.copyOf(request, Math.min(maxRequestSize, Math.max(request.length * 2, length + count)));
+
+            buffer.get(request, length, count);
+            length += count;
+            advance();
+            return true;
+        }
+
+        boolean isRequestComplete() { return state == COMPLETE; }
+
+        /**
+         * Drops the request that was just answered and frames the bytes received after it.
+         */
+        void nextRequest() {
+            System.arraycopy(request, scanPos, request, 0, length - scanPos);
+            length -= scanPos;
+            scanPos = 0;
+            remaining = 0;
+            state = HEAD;
+            requestStart = length > 0 ? System.currentTimeMillis() : 0; // Pipelined bytes start the next request
+            response = null;
+            httpHandler.getResponse().clear();
+            parser.reset();
+            advance();
+        }
+
+        /**
+         * Consumes the newly received bytes according to the current framing state.
+         */
+        private void advance() {
+            while (scanPos < length && state != COMPLETE) {
+                switch (state) {
+                    case HEAD: {
+                        int end = parser.parse(request, 0, length);
+                        if (end == HttpRequestParser.INCOMPLETE) {
+                            scanPos = length;
+                            return;
+                        }
+                        if (end < 0) { // A limit exceeded: the handler answers it and closes the connection
+                            scanPos = length;
+                            state = COMPLETE;
+                            break;
+                        }
+                        scanPos = end;
+                        startBody();
+                        break;
+                    }
+                    case BODY: {
+                        int consumed = Math.min(remaining, length - scanPos);
+                        scanPos += consumed;
+                        remaining -= consumed;
+                        if (remaining == 0) state = COMPLETE;
+                        break;
+                    }
+                    case CHUNK_SIZE: {
+                        int eol = indexOf((byte) '\n', scanPos);
+                        if (eol == -1) return;
+                        int size = parseHex(scanPos, eol);
+                        scanPos = eol + 1;
+                        if (size < 0) state = COMPLETE; // Malformed, let the handler answer it
+                        else if (size == 0) state = TRAILER;
+                        else {
+                            remaining = size;
+                            state = CHUNK_DATA;
+                        }
+                        break;
+                    }
+                    case CHUNK_DATA: {
+                        int consumed = Math.min(remaining, length - scanPos);
+                        scanPos += consumed;
+                        remaining -= consumed;
+                        if (remaining == 0) {
+                            // Skip the line break closing the chunk
+                            int eol = indexOf((byte) '\n', scanPos);
+                            if (eol == -1) return;
+                            scanPos = eol + 1;
+                            state = CHUNK_SIZE;
+                        }
+                        break;
+                    }
+                    case TRAILER: {
+                        // Trailer headers end with an empty line
+                        int eol = indexOf((byte) '\n', scanPos);
+                        if (eol == -1) return;
+                        boolean empty = eol == scanPos || (eol == scanPos + 1 && request[scanPos] == '\r');
+                        scanPos = eol + 1;
+                        if (empty) state = COMPLETE;
+                        break;
+                    }
+                    default: return;
+                }
+            }
+        }
+
+        /**
+         * Uses the parsed request head to decide how the body is framed.
+         */
+        private void startBody() {
+            if (parser.isChunked()) state = CHUNK_SIZE;
+            else if (parser.getContentLength() > 0) {
+                remaining = parser.getContentLength();
+                state = BODY;
+            }
+            else state = COMPLETE;
+        }
+
+        private int indexOf(byte b, int from) {
+            for (int i = from; i < length; i++)
+                if (request[i] == b) return i;
+            return -1;
+        }
+
+        /**
+         * Parses a chunk size line, ignoring chunk extensions.
+         *
+         * @return the chunk size, or -1 if the line is not a valid hexadecimal size
+         */
+        private int parseHex(int from, int to) {
+            int size = 0;
+            boolean digits = false;
+            for (int i = from; i < to; i++) {
+                int digit = Character.digit(request[i], 16);
+                if (digit == -1) break;
+                if (size > (Integer.MAX_VALUE >> 4)) return -1;
+                size = (size << 4) + digit;
+                digits = true;
+            }
+            return digits ? size : -1;
+        }
+    }
+}
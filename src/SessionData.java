@@ -1,78 +1,174 @@
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
 /**
  * The SessionData class represents the data associated with a game session.
  * It stores information such as the number of attempts, last activity time,
  * game status, secret word, and game state.
+ *
+ * The state is packed into primitives (see PackedWord): the secret word and each guess on 25 bits,
+ * each colour pattern on 10 bits, the status on a byte, about 64 bytes per session in total.
+ * The game state strings are rendered on demand. All the other methods go through the
+ * primitive accessors, so that a subclass can keep the state somewhere else.
+ * Every setter marks the session as changed, for the snapshots of the session table.
+ *
+ * The secrets still consistent with the guesses (see CandidateSet) are narrowed down on each
+ * addGameState(). They are not part of the packed state: a session restored from a snapshot,
+ * or viewed from another store, rebuilds them from its rows when they are first asked for.
  */
 public class SessionData {
     private static final int SESSION_TIMEOUT_SECONDS = 600; // 10 minutes
-    private int attempt = 0;
-    private long lastActivityTime;
-    private String status = "Playing"; // "Playing", "Win", "Gameover"
-    private final String secretWord;
-    private final Map<Integer, List<String>> gameState = new HashMap<Integer, List<String>>();
+    public static final int ROWS = 6;
+    public static final byte PLAYING = 0, WIN = 1, GAMEOVER = 2;
+    private static final String[] STATUSES = { "Playing", "Win", "Gameover" };
+
+    private volatile long lastActivityTime; // Written without a lock by the stores
+    private long guesses01, guesses23, guesses45; // Two 25-bit guesses per long, one per half
+    private long colours; // Six 10-bit patterns
+    private int secret;
+    private byte attempt = 0;
+    private byte status = PLAYING;
+    private volatile boolean changed = true; // Since the session was last written to a snapshot
+    private CandidateSet candidates = null;
+    private int candidateRows = 0; // Rows the candidates were narrowed down by
 
     public SessionData(String secretWord) {
-        this.secretWord = secretWord;
+        this.secret = PackedWord.encode(secretWord);
         this.lastActivityTime = System.currentTimeMillis(); // Set the initial last activity time
+    }
 
-        // Initialize the game state
-        List<String> initSecret = new ArrayList<String>();
-        initSecret.add(secretWord);
-        initSecret.add(secretWord);
-        this.gameState.put(-1, initSecret); // -1 is the initial state
+    /**
+     * Creates a session whose state is held by a subclass.
+     */
+    protected SessionData() {}
 
-        // Initialize the game state
-        for (int i = 0; i < 6; i++) {
-            List<String> data = new ArrayList<String>();
-            data.add(""); // initial guess
-            data.add(""); // initial color code
-            this.gameState.put(i, data);
-        }
-        
-    }
+    public static long getSessionTimeoutMillis() { return SESSION_TIMEOUT_SECONDS * 1000L; }
 
-    // Getters
+    // Primitive accessors
+    public int getSecret() { return this.secret; }
+    public int getGuess(int row) {
+        long pair = row < 2 ? guesses01 : row < 4 ? guesses23 : guesses45;
+        return (int) (pair >>> (32 * (row & 1)));
+    }
+    public int getColours(int row) { return (int) (colours >>> (10 * row)) & 0x3FF; }
+    public byte getStatusCode() { return this.status; }
     public int getAttempt() { return this.attempt; }
     public long getLastActivityTime() { return this.lastActivityTime; }
-    public String getStatus() { return this.status; }
-    public String getSecretWord() { return this.secretWord; }
+
+    protected void setSecret(int secret) {
+        this.secret = secret;
+        this.changed = true;
+    }
+    protected void setGuess(int row, int guess) {
+        int shift = 32 * (row & 1);
+        long mask = ~(0xFFFFFFFFL << shift);
+        long bits = (guess & 0xFFFFFFFFL) << shift;
+        if (row < 2) guesses01 = (guesses01 & mask) | bits;
+        else if (row < 4) guesses23 = (guesses23 & mask) | bits;
+        else guesses45 = (guesses45 & mask) | bits;
+        this.changed = true;
+    }
+    protected void setColours(int row, int pattern) {
+        int shift = 10 * row;
+        colours = (colours & ~(0x3FFL << shift)) | ((long) pattern << shift);
+        this.changed = true;
+    }
+    public void setStatusCode(byte status) {
+        this.status = status;
+        this.changed = true;
+    }
+    protected void setAttempt(int attempt) {
+        this.attempt = (byte) attempt;
+        this.changed = true;
+    }
+    protected void setLastActivityTime(long time) {
+        this.lastActivityTime = time;
+        this.changed = true;
+    }
+
+    /**
+     * Clears the changed mark of the session, before it is written to a snapshot.
+     *
+     * @return true if the session changed since the mark was last cleared
+     */
+    protected boolean clearChanged() {
+        if (!changed) return false;
+        changed = false;
+        return true;
+    }
+
+    // Getters
+    public String getStatus() { return STATUSES[getStatusCode()]; }
+    public String getSecretWord() { return PackedWord.decode(getSecret()); }
     public String getFullGameState() {
-        String fullGameState = "";
-        for (int i = -1; i < 6; i++) {
-            List<String> data = gameState.get(i);
-            fullGameState += i + ":" + data.get(0) + ":" + data.get(1) + ";";
+        // -1:secret:secret;0:guess:color;...;5:guess:color;
+        String secretWord = getSecretWord();
+        StringBuilder fullGameState = new StringBuilder(128);
+        fullGameState.append("-1:").append(secretWord).append(':').append(secretWord).append(';');
+        for (int i = 0; i < ROWS; i++) appendRow(fullGameState, i).append(';');
+        return fullGameState.toString();
+    }
+    public CandidateSet getCandidates() {
+        int rows = Math.min(getAttempt(), ROWS);
+        if (candidates == null || candidateRows != rows) {
+            CandidateSet set = CandidateSet.all();
+            for (int row = 0; row < rows; row++) {
+                int feedback = FeedbackScorer.fromColours(getColours(row));
+                if (getGuess(row) != PackedWord.NONE && feedback >= 0) set = CandidateSet.after(set, getGuess(row), feedback);
+            }
+            candidates = set;
+            candidateRows = rows;
         }
-        return fullGameState;
+        return candidates;
     }
     public String getCurrGameState(int currGS) {
-        List<String> data = gameState.get(currGS);
-        return currGS + ":" + data.get(0) + ":" + data.get(1);
+        if (currGS == -1) return "-1:" + getSecretWord() + ":" + getSecretWord();
+        return appendRow(new StringBuilder(16), currGS).toString();
     }
-    
+
     // Setters
-    public void incrementAttempts() { this.attempt++; }
-    public void decrementAttempts() { this.attempt--; }
-    public void resetAttempts() { this.attempt = 0; }
-    public void updateLastActivityTime() { this.lastActivityTime = System.currentTimeMillis(); }
-    public void setStatus(String status) { this.status = status; }
-    public void addGameState(String guess, String color) {
-        List<String> data = new ArrayList<String>();
-        data.add(guess);
-        data.add(color);
-        gameState.put(this.attempt, data);
+    public void incrementAttempts() { setAttempt(getAttempt() + 1); }
+    public void decrementAttempts() { setAttempt(getAttempt() - 1); }
+    public void resetAttempts() { setAttempt(0); }
+    public void updateLastActivityTime() { setLastActivityTime(System.currentTimeMillis()); }
+    public void setStatus(String status) {
+        for (byte i = 0; i < STATUSES.length; i++)
+            if (STATUSES[i].equals(status)) setStatusCode(i);
+    }
+    public void addGameState(String guess, String color) { addGameState(PackedWord.encode(guess), PackedWord.encodeColours(color)); }
+    public void addGameState(int guess, int colours) {
+        // Rows only exist from 0 to 5: out of them, the attempt is counted but not recorded
+        int row = getAttempt();
+        if (row >= 0 && row < ROWS) {
+            setGuess(row, guess);
+            setColours(row, colours);
+
+            // Narrow the candidates down when they are up to this row, rebuild them on demand otherwise
+            if (row == 0) {
+                candidates = CandidateSet.all();
+                candidateRows = 0;
+            }
+            int feedback = FeedbackScorer.fromColours(colours);
+            if (candidates != null && candidateRows == row && feedback >= 0) {
+                candidates = CandidateSet.after(candidates, guess, feedback);
+                candidateRows = row + 1;
+            }
+            else candidates = null;
+        }
         incrementAttempts();
     }
 
     // Other methods
     public boolean isExpired() {
         long currentTime = System.currentTimeMillis();
-        long elapsedTime = currentTime - lastActivityTime;
-        return elapsedTime > (SESSION_TIMEOUT_SECONDS * 1000); // Convert seconds to milliseconds
+        long elapsedTime = currentTime - getLastActivityTime();
+        return elapsedTime > getSessionTimeoutMillis();
+    }
+
+    /**
+     * Appends "row:guess:color", with empty guess and color for a row not played yet.
+     */
+    private StringBuilder appendRow(StringBuilder builder, int row) {
+        builder.append(row).append(':');
+        if (row < 0 || row >= ROWS) return builder.append(':');
+        return builder.append(PackedWord.decode(getGuess(row))).append(':').append(PackedWord.decodeColours(getColours(row)));
     }
 
 }
@@ -0,0 +1,301 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The SessionSnapshot class keeps a copy of the session table on disk, so that a restart
+ * of the server does not reset the games in progress.
+ *
+ * The file is a header followed by fixed-size records, one per session state. A snapshot only
+ * appends the sessions changed since the previous one; when the file holds twice as many records
+ * as there are live sessions, it is compacted: the whole table is written to a new file, which
+ * atomically replaces the old one. At startup, the file is memory-mapped and read in order,
+ * the last record of a session winning, and the expired sessions are left out.
+ *
+ * Snapshots are taken on a background thread and never lock the table (see SessionStore.forEach()),
+ * and a last one is taken when the JVM shuts down. In durable mode, the changes made between two
+ * snapshots are also in a write-ahead log, which each snapshot truncates.
+ */
+public class SessionSnapshot {
+    private static final long MAGIC = 0x57524c44534e4150L; // "WRLDSNAP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    // Record layout, in bytes
+    private static final int MSB = 0, LSB = 8, LAST_ACTIVITY = 16, GUESSES = 24, COLOURS = 48,
+            SECRET = 56, ATTEMPT = 60, STATUS = 61, CHECK = 62;
+    static final int RECORD_SIZE = 64;
+    private static final int BATCH_RECORDS = 1024; // Records per write
+    private static final int MIN_COMPACTION_RECORDS = 4096;
+
+    private final Path file;
+    private final Path tempFile;
+    private final SessionStore store;
+    private final ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_RECORDS * RECORD_SIZE);
+    private final WriteAheadLog log; // Null when guesses are not logged
+
+    // Guarded by this
+    private FileChannel channel; // Opened at the end of the file
+    private long records = 0; // Records in the file
+    private boolean compactionNeeded = false;
+
+    /**
+     * Creates the snapshots of a session table.
+     *
+     * @param file  the snapshot file
+     * @param store the session table
+     * @param log   the write-ahead log of the changes made between two snapshots, or null
+     */
+    public SessionSnapshot(Path file, SessionStore store, WriteAheadLog log) {
+        this.file = file;
+        this.tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        this.store = store;
+        this.log = log;
+    }
+
+    /**
+     * Puts the sessions of the snapshot file back into the table, then those of the write-ahead log.
+     * A missing file is an empty table; an unreadable one is reported and left to be replaced by the
+     * next compaction.
+     *
+     * @return the number of records restored
+     */
+    public synchronized int load() {
+        int restored = 0;
+        try {
+            restored += replay(file, store, false);
+        }
+        catch (IOException | RuntimeException e) {
+            System.err.println("Cannot restore the sessions from " + file + ": " + e.getMessage());
+        }
+        if (log != null) {
+            try {
+                restored += log.replay(store);
+            }
+            catch (IOException e) {
+                System.err.println("Cannot open the write-ahead log, guesses are not durable: " + e.getMessage());
+            }
+        }
+        // The restored sessions are all marked as changed: rewrite them once, without the stale records
+        compactionNeeded = true;
+        return restored;
+    }
+
+    /**
+     * Appends the sessions changed since the previous snapshot, or compacts the file.
+     *
+     * @return the number of records written
+     */
+    public synchronized int snapshot() throws IOException {
+        // The log records of the changes made so far are no longer needed once the snapshot is on disk
+        if (log != null) log.rotate();
+
+        int written;
+        if (channel == null || records > Math.max(MIN_COMPACTION_RECORDS, 2L * store.size())) compactionNeeded = true;
+        if (compactionNeeded) written = compact();
+        else {
+            written = write(channel, true);
+            if (written > 0) channel.force(false);
+            records += written;
+        }
+
+        if (log != null) log.deleteRotated();
+        return written;
+    }
+
+    /**
+     * Writes the whole table to a new file, which then replaces the current one.
+     *
+     * @return the number of records written
+     */
+    public synchronized int compact() throws IOException {
+        int written;
+        try (FileChannel out = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(out);
+            written = write(out, false);
+            out.force(false);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        if (channel != null) channel.close();
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        records = written;
+        compactionNeeded = false;
+        return written;
+    }
+
+    /**
+     * Takes a snapshot at a fixed rate on a daemon thread, and a last one at shutdown,
+     * after which the write-ahead log is flushed and closed.
+     *
+     * @param intervalMillis the time between two snapshots
+     */
+    public void start(long intervalMillis) {
+        ScheduledExecutorService snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotter.scheduleWithFixedDelay(this::snapshotQuietly, 0, intervalMillis, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            snapshotQuietly();
+            if (log != null) log.close();
+        }, "session-snapshot-shutdown"));
+    }
+
+
+    // HELPERS METHODS ------------------------------------------------------------
+    /**
+     * Takes a snapshot on a background thread: a failed one is reported and the next one compacts.
+     */
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        }
+        catch (IOException | RuntimeException e) {
+            System.err.println("Cannot snapshot the sessions to " + file + ": " + e.getMessage());
+            synchronized (this) { compactionNeeded = true; } // The file may end with a torn batch
+        }
+    }
+
+    /**
+     * Writes the sessions to a channel, by batches of records.
+     *
+     * @param changedOnly true to only write the sessions changed since they were last written
+     * @return the number of records written
+     */
+    private int write(FileChannel out, boolean changedOnly) throws IOException {
+        int[] written = { 0 };
+        IOException[] failure = { null };
+        batch.clear();
+        store.forEach(changedOnly, (msb, lsb, session) -> {
+            if (failure[0] != null) return;
+            if (!batch.hasRemaining()) {
+                try { drain(out); }
+                catch (IOException e) { failure[0] = e; return; }
+            }
+            writeRecord(batch, msb, lsb, session);
+            written[0]++;
+        });
+        if (failure[0] != null) throw failure[0];
+        drain(out);
+        return written[0];
+    }
+
+    private void drain(FileChannel out) throws IOException {
+        batch.flip();
+        while (batch.hasRemaining()) out.write(batch);
+        batch.clear();
+    }
+
+
+    // FILE FORMAT, shared with WriteAheadLog ------------------------------------------------------------
+    /**
+     * Replays a file of session records into the table: the last record of a session wins,
+     * and expired, torn or garbled records are skipped. The file is memory-mapped.
+     *
+     * @param file      the snapshot or log file
+     * @param store     the session table
+     * @param newerOnly true to skip the records older than the session already in the table
+     * @return the number of records restored, 0 if the file does not exist
+     * @throws IOException if the file cannot be read, or is not a file of session records
+     */
+    static int replay(Path file, SessionStore store, boolean newerOnly) throws IOException {
+        int restored = 0;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size < HEADER_SIZE) throw new IOException("Truncated header");
+
+            MappedByteBuffer map = in.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (map.getLong(0) != MAGIC || map.getInt(8) != VERSION || map.getInt(12) != RECORD_SIZE)
+                throw new IOException("Not a session snapshot, or of another version");
+
+            long now = System.currentTimeMillis();
+            long count = (size - HEADER_SIZE) / RECORD_SIZE; // A torn last record is ignored
+            for (long i = 0; i < count; i++) {
+                int base = (int) (HEADER_SIZE + i * RECORD_SIZE);
+                if (map.getShort(base + CHECK) != checksum(map, base)) continue;
+                long lastActivity = map.getLong(base + LAST_ACTIVITY);
+                if (now - lastActivity > SessionData.getSessionTimeoutMillis()) continue;
+                long msb = map.getLong(base + MSB);
+                long lsb = map.getLong(base + LSB);
+                if (newerOnly) {
+                    SessionData current = store.get(new UUID(msb, lsb).toString());
+                    if (current != null && current.getLastActivityTime() > lastActivity) continue;
+                }
+                store.restore(msb, lsb, read(map, base));
+                restored++;
+            }
+        }
+        catch (NoSuchFileException e) {
+            return 0;
+        }
+        return restored;
+    }
+
+    /**
+     * Returns the size of a file of session records, without its torn last record if any.
+     */
+    static long validSize(long size) {
+        return size < HEADER_SIZE ? 0 : size - (size - HEADER_SIZE) % RECORD_SIZE;
+    }
+
+    static void writeHeader(FileChannel out) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putLong(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).flip();
+        while (header.hasRemaining()) out.write(header);
+    }
+
+    /**
+     * Writes the record of a session at the position of the buffer, and moves the position past it.
+     */
+    static void writeRecord(ByteBuffer buffer, long msb, long lsb, SessionData session) {
+        int base = buffer.position();
+        buffer.putLong(base + MSB, msb);
+        buffer.putLong(base + LSB, lsb);
+        buffer.putLong(base + LAST_ACTIVITY, session.getLastActivityTime());
+        for (int row = 0; row < SessionData.ROWS; row++) buffer.putInt(base + GUESSES + 4 * row, session.getGuess(row));
+        long colours = 0;
+        for (int row = 0; row < SessionData.ROWS; row++) colours |= (long) session.getColours(row) << (10 * row);
+        buffer.putLong(base + COLOURS, colours);
+        buffer.putInt(base + SECRET, session.getSecret());
+        buffer.put(base + ATTEMPT, (byte) session.getAttempt());
+        buffer.put(base + STATUS, session.getStatusCode());
+        buffer.putShort(base + CHECK, checksum(buffer, base));
+        buffer.position(base + RECORD_SIZE);
+    }
+
+    private static SessionData read(ByteBuffer map, int base) {
+        SessionData session = new SessionData();
+        session.setSecret(map.getInt(base + SECRET));
+        for (int row = 0; row < SessionData.ROWS; row++) {
+            session.setGuess(row, map.getInt(base + GUESSES + 4 * row));
+            session.setColours(row, (int) (map.getLong(base + COLOURS) >>> (10 * row)) & 0x3FF);
+        }
+        session.setAttempt(map.get(base + ATTEMPT));
+        session.setStatusCode(map.get(base + STATUS));
+        session.setLastActivityTime(map.getLong(base + LAST_ACTIVITY));
+        return session;
+    }
+
+    /**
+     * Folds the bytes of a record before its checksum, so that a torn or garbled record is skipped.
+     */
+    private static short checksum(ByteBuffer buffer, int base) {
+        long h = 0;
+        for (int i = 0; i < SECRET; i += 8) h = (h ^ buffer.getLong(base + i)) * 0x9e3779b97f4a7c15L;
+        h = (h ^ buffer.getInt(base + SECRET)) * 0x9e3779b97f4a7c15L;
+        h = (h ^ buffer.getShort(base + ATTEMPT)) * 0x9e3779b97f4a7c15L;
+        return (short) ((h >>> 48) ^ (h >>> 32) ^ (h >>> 16) ^ h);
+    }
+}
@@ -0,0 +1,98 @@
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The SessionStore interface is the table of the live game sessions, keyed by session ID.
+ * A store is bounded: adding a session to a full store evicts one of the least recently active.
+ * Expired sessions are removed by sweep(), which startSweeper() runs in the background.
+ */
+public interface SessionStore {
+    /**
+     * Returns a session.
+     *
+     * @param id the session ID
+     * @return the session, or null if there is none with this ID
+     */
+    SessionData get(String id);
+
+    boolean contains(String id);
+
+    /**
+     * Adds or replaces a session, evicting the least recently active sessions beyond the capacity.
+     * A store may copy the session: the game is then played on the session returned, never on the one given.
+     *
+     * @param id      the session ID
+     * @param session the session
+     * @return the session as stored
+     */
+    SessionData put(String id, SessionData session);
+
+    /**
+     * Puts back a session saved by a snapshot: as put(), but the session does not count as created.
+     *
+     * @param msb     the most significant bits of the session UUID
+     * @param lsb     the least significant bits of the session UUID
+     * @param session the session
+     */
+    void restore(long msb, long lsb, SessionData session);
+
+    /**
+     * Records an activity on a session, which postpones its expiry.
+     *
+     * @param id the session ID
+     */
+    void touch(String id);
+
+    void remove(String id);
+
+    /**
+     * Removes the expired sessions.
+     *
+     * @return the number of sessions removed
+     */
+    int sweep();
+
+    /**
+     * Walks the sessions without holding up the requests: the sessions added or removed
+     * meanwhile may or may not be seen. The changed mark of every session seen is cleared.
+     *
+     * @param changedOnly true to only walk the sessions changed since they were last walked
+     * @param visitor     the receiver of the sessions
+     */
+    void forEach(boolean changedOnly, Visitor visitor);
+
+    /**
+     * Receives the sessions walked by forEach(), with the two halves of their UUID.
+     */
+    interface Visitor {
+        void visit(long msb, long lsb, SessionData session);
+    }
+
+    // Metrics
+    int size();
+    int getMaxSessions();
+    long getCreatedCount();
+    long getExpiredCount();
+    long getEvictedCount();
+
+    /**
+     * Starts the background sweeper, on a daemon thread.
+     *
+     * @param intervalMillis the time between two sweeps
+     */
+    default void startSweeper(long intervalMillis) {
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                int removed = sweep();
+                if (removed > 0) System.out.println("-- Session sweeper removed " + removed + " expired sessions (" + size() + " live).");
+            }
+            catch (RuntimeException e) { e.printStackTrace(); } // A failed sweep must not cancel the next ones
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,105 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The StaticAsset class is a resource whose content never changes while the server runs:
+ * the script, the style sheet and the logo of the page.
+ * Its strong ETag is derived from its content and doubles as the version in its URL, so that
+ * browsers can cache it forever and only ask for it again when the server ships a new content.
+ * The compressed representations are built once, with the asset; each one has its own ETag.
+ */
+public class StaticAsset {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int VERSION_BYTES = 8;
+
+    private final String path;
+    private final String contentType;
+    private final String version;
+
+    // Representations, indexed by the ordinal of their encoding; null when not worth compressing
+    private final byte[][] contents = new byte[ResponseCompressor.Encoding.values().length][];
+    private final String[] eTags = new String[contents.length];
+    private final byte[][] eTagBytes = new byte[contents.length][];
+
+    /**
+     * Creates an asset from its content.
+     *
+     * @param path        the path the asset is served at, without its version
+     * @param contentType the content type of the asset
+     * @param content     the content of the asset, which must not be modified afterwards
+     */
+    public StaticAsset(String path, String contentType, byte[] content) {
+        this.path = path;
+        this.contentType = contentType;
+        this.version = digest(content);
+
+        for (ResponseCompressor.Encoding encoding : ResponseCompressor.Encoding.values()) {
+            byte[] representation = content;
+            if (encoding != ResponseCompressor.Encoding.IDENTITY) {
+                if (!ResponseCompressor.isWorthCompressing(content.length)) continue;
+                representation = ResponseCompressor.compress(content, encoding);
+                if (representation.length >= content.length) continue; // Already compressed, like the PNG logo
+            }
+
+            int i = encoding.ordinal();
+            this.contents[i] = representation;
+            this.eTags[i] = encoding == ResponseCompressor.Encoding.IDENTITY ? "\"" + version + "\"" : "\"" + version + "-" + encoding.getToken() + "\"";
+            this.eTagBytes[i] = eTags[i].getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    public StaticAsset(String path, String contentType, String content) {
+        this(path, contentType, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Getters
+    public String getPath() { return path; }
+    public String getContentType() { return contentType; }
+    public byte[] getContent() { return getContent(ResponseCompressor.Encoding.IDENTITY); }
+    public byte[] getContent(ResponseCompressor.Encoding encoding) { return contents[encoding.ordinal()]; }
+    public String getETag(ResponseCompressor.Encoding encoding) { return eTags[encoding.ordinal()]; }
+    public byte[] getETagBytes(ResponseCompressor.Encoding encoding) { return eTagBytes[encoding.ordinal()]; }
+    public boolean isCompressed() { return contents[ResponseCompressor.Encoding.GZIP.ordinal()] != null || contents[ResponseCompressor.Encoding.DEFLATE.ordinal()] != null; }
+
+    /**
+     * Returns the URL the page links the asset with. The version changes with the content.
+     *
+     * @return the versioned URL of the asset
+     */
+    public String getUrl() { return path + "?v=" + version; }
+
+    /**
+     * Chooses the representation to send to a client: the preferred compressed one it accepts, if any.
+     *
+     * @param acceptsGzip    true if the client accepts gzip
+     * @param acceptsDeflate true if the client accepts deflate
+     * @return the encoding of the representation to send
+     */
+    public ResponseCompressor.Encoding negotiate(boolean acceptsGzip, boolean acceptsDeflate) {
+        if (acceptsGzip && getContent(ResponseCompressor.Encoding.GZIP) != null) return ResponseCompressor.Encoding.GZIP;
+        if (acceptsDeflate && getContent(ResponseCompressor.Encoding.DEFLATE) != null) return ResponseCompressor.Encoding.DEFLATE;
+        return ResponseCompressor.Encoding.IDENTITY;
+    }
+
+
+    // HELPERS METHODS ------------------------------------------------------------
+    /**
+     * Returns the hexadecimal form of the first bytes of the SHA-256 digest of the content.
+     *
+     * @param content the content to digest
+     * @return the digest in lower case hexadecimal
+     */
+    private static String digest(byte[] content) {
+        byte[] hash;
+        try { hash = MessageDigest.getInstance("SHA-256").digest(content); }
+        catch (NoSuchAlgorithmException e) { throw new IllegalStateException("SHA-256 is not available", e); }
+
+        char[] hex = new char[VERSION_BYTES * 2];
+        for (int i = 0; i < VERSION_BYTES; i++) {
+            hex[2 * i] = HEX[(hash[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(hex);
+    }
+}
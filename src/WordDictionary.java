@@ -0,0 +1,176 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The WordDictionary class holds the words of the game, indexed once when the class is initialized:
+ * the valid guesses and the pool the secret words are drawn from.
+ *
+ * Every word packs into 25 bits (see PackedWord), so the valid guesses are a bitset over all the
+ * 2^25 packed values (4 MB): checking a guess is a single bit test, which can be done straight from
+ * the bytes of a request, without creating a String nor hashing one.
+ *
+ * The words are read from the binary word file given by WordleServer.getWordsFile(), compiled from
+ * WordleWordSet by WordListCompiler: a header then the sorted packed words, memory-mapped and copied
+ * in one go. The huge static initializer of WordleWordSet then never runs; it is only the fallback
+ * when the file is missing or unreadable. getWordSet() is a Set view of the dictionary for the code
+ * that needs one, backed by the bitset.
+ *
+ * The pool is the whole dictionary, or a curated list of answers read from the file given by
+ * WordleServer.getSecretWordsFile(), one word per line. Drawing a secret word is an index into
+ * an array, from the random generator of the current thread.
+ */
+public class WordDictionary {
+    // Binary word file: magic, version, word count, then the packed words in increasing order
+    public static final int FILE_MAGIC = 0x57524453; // "WRDS"
+    public static final int FILE_VERSION = 1;
+    public static final int FILE_HEADER_SIZE = 12;
+
+    private static final int[] WORDS = loadWords(WordleServer.getWordsFile());
+    private static final long[] VALID = bitset(WORDS); // Bit w is set when the packed word w is valid
+    private static final int[] SECRETS = loadSecrets(WordleServer.getSecretWordsFile());
+    private static final Set<String> WORD_SET_VIEW = new WordSetView();
+
+    // Getters
+    public static int size() { return WORDS.length; }
+    public static int getSecretPoolSize() { return SECRETS.length; }
+    public static Set<String> getWordSet() { return WORD_SET_VIEW; }
+    public static int[] getWords() { return WORDS; } // Shared: not to be modified
+    public static int[] getSecretPool() { return SECRETS; } // Shared: not to be modified
+
+    /**
+     * Checks that a word is a valid guess.
+     *
+     * @param word the word, in any case
+     * @return true if the word is in the dictionary
+     */
+    public static boolean contains(String word) { return contains(PackedWord.encode(word)); }
+
+    /**
+     * Checks that a packed word is a valid guess.
+     *
+     * @param packed the word, packed by PackedWord
+     * @return true if the word is in the dictionary, false for PackedWord.NONE
+     */
+    public static boolean contains(int packed) { return (VALID[packed >>> 6] & (1L << packed)) != 0; }
+
+    /**
+     * Draws a secret word from the pool.
+     *
+     * @return a word of the pool, in lower case
+     */
+    public static String randomSecret() { return PackedWord.decode(SECRETS[ThreadLocalRandom.current().nextInt(SECRETS.length)]); }
+
+
+    // HELPERS METHODS ------------------------------------------------------------
+    /**
+     * Reads the binary word file, or packs WordleWordSet when there is no usable file.
+     *
+     * @param path the binary word file, or an empty String
+     * @return the packed words, in increasing order
+     */
+    private static int[] loadWords(String path) {
+        if (path.isEmpty()) return WordListCompiler.pack(WordleWordSet.WORD_SET);
+        try (FileChannel in = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            ByteBuffer map = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            if (map.remaining() < FILE_HEADER_SIZE || map.getInt(0) != FILE_MAGIC || map.getInt(4) != FILE_VERSION)
+                throw new IOException("Not a word file, or of another version");
+            int count = map.getInt(8);
+            if (count <= 0 || map.remaining() != FILE_HEADER_SIZE + 4L * count) throw new IOException("Truncated word file");
+
+            int[] words = new int[count];
+            map.position(FILE_HEADER_SIZE);
+            map.asIntBuffer().get(words);
+            for (int i = 0; i < count; i++) {
+                boolean sorted = i == 0 || words[i - 1] < words[i];
+                if (!sorted || words[i] <= PackedWord.NONE || words[i] >>> (PackedWord.LETTERS * PackedWord.BITS_PER_LETTER) != 0)
+                    throw new IOException("Invalid word at " + i);
+            }
+            return words;
+        }
+        catch (NoSuchFileException e) {
+            System.err.println("-- No word file " + path + ", loading WordleWordSet (run WordListCompiler to build it)");
+        }
+        catch (IOException e) {
+            System.err.println("-- Could not read " + path + ", loading WordleWordSet");
+            e.printStackTrace();
+        }
+        return WordListCompiler.pack(WordleWordSet.WORD_SET);
+    }
+
+    /**
+     * Sets the bit of every packed word in a bitset of 2^25 bits.
+     */
+    private static long[] bitset(int[] words) {
+        long[] bits = new long[1 << (PackedWord.LETTERS * PackedWord.BITS_PER_LETTER - 6)];
+        for (int packed : words) bits[packed >>> 6] |= 1L << packed;
+        return bits;
+    }
+
+    /**
+     * Reads the curated pool of secret words. Words that are not valid guesses are left out,
+     * as they could never be found; without a file or a valid word, the pool is the whole dictionary.
+     *
+     * @param path the file of secret words, or an empty String
+     * @return the pool of secret words, packed
+     */
+    private static int[] loadSecrets(String path) {
+        if (path.isEmpty()) return WORDS;
+
+        int[] secrets = new int[0];
+        try {
+            secrets = Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8).stream()
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty())
+                    .mapToInt(word -> {
+                        int packed = PackedWord.encode(word);
+                        if (!contains(packed)) System.err.println("-- Secret word not in the dictionary, ignored: " + word);
+                        return packed;
+                    })
+                    .filter(WordDictionary::contains)
+                    .distinct()
+                    .toArray();
+        }
+        catch (IOException e) {
+            System.err.println("-- Could not read " + path);
+            e.printStackTrace();
+        }
+
+        if (secrets.length == 0) {
+            System.err.println("-- No secret word in " + path + ", drawing from the whole dictionary");
+            return WORDS;
+        }
+        return secrets;
+    }
+
+    /**
+     * The dictionary as a read-only Set of lower case words: lookups test the bitset,
+     * iterations unpack the sorted words.
+     */
+    private static class WordSetView extends AbstractSet<String> {
+        @Override public int size() { return WORDS.length; }
+        @Override public boolean contains(Object word) {
+            return word instanceof String && ((String) word).equals(((String) word).toLowerCase()) && WordDictionary.contains((String) word);
+        }
+        @Override public Iterator<String> iterator() {
+            return new Iterator<String>() {
+                private int next = 0;
+                @Override public boolean hasNext() { return next < WORDS.length; }
+                @Override public String next() {
+                    if (next >= WORDS.length) throw new NoSuchElementException();
+                    return PackedWord.decode(WORDS[next++]);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,69 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The WordListCompiler class is the build step of the dictionary: it packs the words of
+ * WordleWordSet, or of a text file of one word per line, into the binary word file that
+ * WordDictionary memory-maps at startup (see WordDictionary for the format).
+ * Run it again whenever the word list changes.
+ *
+ * Usage: java WordListCompiler [output=words.bin] [wordList.txt]
+ */
+public class WordListCompiler {
+    public static void main(String[] args) throws IOException {
+        Path output = Paths.get(args.length > 0 ? args[0] : "words.bin");
+
+        Set<String> words;
+        if (args.length > 1) {
+            words = new HashSet<>();
+            for (String line : Files.readAllLines(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+                String word = line.trim();
+                if (!word.isEmpty()) words.add(word);
+            }
+        }
+        else words = WordleWordSet.WORD_SET;
+
+        int[] packed = pack(words);
+        if (packed.length < words.size())
+            System.err.println("-- " + (words.size() - packed.length) + " entries are not words of five letters, left out");
+        write(output, packed);
+        System.out.println("-- " + packed.length + " words written to " + output + " (" + Files.size(output) + " bytes)");
+    }
+
+    /**
+     * Packs the words of a set, sorted so that an index always stands for the same word.
+     * Entries that are not words of five letters are left out.
+     *
+     * @param words the words
+     * @return the packed words, in increasing order
+     */
+    public static int[] pack(Set<String> words) {
+        return words.stream().mapToInt(PackedWord::encode).filter(packed -> packed != PackedWord.NONE).sorted().distinct().toArray();
+    }
+
+    /**
+     * Writes the word file next to its destination, then moves it in place,
+     * so that a server starting meanwhile never maps a partial file.
+     */
+    private static void write(Path output, int[] packed) throws IOException {
+        ByteBuffer content = ByteBuffer.allocate(WordDictionary.FILE_HEADER_SIZE + 4 * packed.length);
+        content.putInt(WordDictionary.FILE_MAGIC).putInt(WordDictionary.FILE_VERSION).putInt(packed.length);
+        content.asIntBuffer().put(packed);
+        content.clear();
+
+        Path temp = output.resolveSibling(output.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (content.hasRemaining()) out.write(content);
+        }
+        Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
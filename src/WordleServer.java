@@ -1,11 +1,15 @@
 import java.io.*;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.Map;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Paths;
 import java.util.Random;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.UUID;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
 
 
 /**
@@ -18,28 +22,143 @@ public class WordleServer {
     private static final int PORT = 8008;
     private static final int MAX_CHUNCK_SIZE = 128;
     private static final int MAX_ATTEMPTS = 5;
-    private static final Map<String, SessionData> SESSIONS = new ConcurrentHashMap<>(); // ConcurrentHashMap ensures thread safety
+    private static final int MAX_REQUEST_SIZE = 64 * 1024; // bytes
+    private static final int KEEP_ALIVE_TIMEOUT = Integer.getInteger("wordle.keepAliveTimeout", 5000); // ms
+    // Slow clients: a request must arrive within REQUEST_TIMEOUT of its first byte, without pausing for READ_TIMEOUT
+    private static final int REQUEST_TIMEOUT = Integer.getInteger("wordle.requestTimeout", 10_000); // ms
+    private static final int READ_TIMEOUT = Integer.getInteger("wordle.readTimeout", 5_000); // ms
+    private static final int MAX_REQUEST_LINE = Integer.getInteger("wordle.maxRequestLine", 8 * 1024); // bytes
+    private static final int MAX_HEADER_SIZE = Integer.getInteger("wordle.maxHeaderSize", 8 * 1024); // bytes of header lines
+    private static final int MAX_HEADERS = Integer.getInteger("wordle.maxHeaders", 100);
+    private static final int MAX_KEEP_ALIVE_REQUESTS = Integer.getInteger("wordle.maxKeepAliveRequests", 100);
+    private static final int COMPRESSION_THRESHOLD = Integer.getInteger("wordle.compressionThreshold", 1024); // bytes
+    private static final int COMPRESSION_LEVEL = Integer.getInteger("wordle.compressionLevel", 6); // 1 (fast) to 9 (small)
+    private static final int MAX_SESSIONS = Integer.getInteger("wordle.maxSessions", 100_000);
+    private static final int SESSION_SWEEP_INTERVAL = Integer.getInteger("wordle.sessionSweepInterval", 30_000); // ms
+    // Dictionary compiled by WordListCompiler; without it, WordleWordSet is loaded instead
+    private static final String WORDS_FILE = System.getProperty("wordle.wordsFile", "words.bin");
+    // Curated answers, one per line, the secret words are drawn from; empty to draw from the whole dictionary
+    private static final String SECRET_WORDS_FILE = System.getProperty("wordle.secretWords", "");
+    // Logger of the request path: "debug" also dumps the responses, one event in LOG_SAMPLE is kept below "warn"
+    private static final String LOG_LEVEL = System.getProperty("wordle.logLevel", "info");
+    private static final String LOG_FILE = System.getProperty("wordle.logFile", ""); // JSON lines, the standard output if empty
+    private static final int LOG_SAMPLE = Integer.getInteger("wordle.logSample", 1);
+    private static final int LOG_BUFFER_SIZE = Integer.getInteger("wordle.logBufferSize", 8192); // events, rounded down to a power of 2
+    // Entries of the cache of the hottest (secret, guess) feedbacks, rounded down to a power of 2, 0 (default) to score every guess
+    private static final int FEEDBACK_CACHE_SIZE = Integer.getInteger("wordle.feedbackCacheSize", 0);
+    private static final int HINT_BUDGET = Integer.getInteger("wordle.hintBudgetMs", 100); // ms to rank the guesses of a hint
+    // "heap" (default) or "offheap", for millions of sessions out of the reach of the garbage collector
+    private static final String SESSION_STORE = System.getProperty("wordle.sessionStore", "heap");
+    private static final SessionStore SESSIONS = createSessionStore(SESSION_STORE, MAX_SESSIONS); // Thread safe, bounded, swept in the background
+    // Where the session table is kept across restarts, an empty path to keep it in memory only
+    private static final String SNAPSHOT_FILE = System.getProperty("wordle.snapshotFile", "sessions.snapshot");
+    private static final int SNAPSHOT_INTERVAL = Integer.getInteger("wordle.snapshotInterval", 5_000); // ms
+    // Durable mode: a guess is answered once it is in the write-ahead log of the snapshot, synced to disk
+    private static final boolean DURABLE = Boolean.getBoolean("wordle.durable");
+    private static final int WAL_FLUSH_INTERVAL = Integer.getInteger("wordle.walFlushInterval", 0); // ms between two fsyncs, 0: as soon as the previous one is done
+    private static WriteAheadLog WAL = null; // Set at startup in durable mode
+    private static Executor EXECUTOR = null; // Of the blocking server, set at startup
 
     public static void main(String[] args) {
         // Create a thread pool with X threads
         int maxThreads = Integer.parseInt(args[0]);
-        ExecutorService executorService = Executors.newFixedThreadPool(maxThreads);
-    
-        try (ServerSocket serverSocket = new ServerSocket(PORT)) {
-            System.out.println("-- Wordle HTTP Server is listening on port " + PORT + ".");
+        // Optional execution mode: "pool" (default), "virtual" (virtual thread per connection) or "nio" (selector event loop)
+        String mode = args.length > 1 ? args[1] : "pool";
 
-            while (true) {
-                // Accepting new connections
-                try {
-                    Socket clientSocket = serverSocket.accept();
-                    // Handle HTTP request in a separate thread
-                    HttpHandler httpHandler = new HttpHandler(getServerID(), clientSocket);
-                    executorService.execute(httpHandler);
-                } catch (IOException ioe2) {
-                    System.err.println("-- Error accepting client connection.");
-                    ioe2.printStackTrace();
-                }
-            }
+        // Load the logo and build the static parts of the page before the first request
+        HTML.preload();
+        // Index the dictionary and the pool of secret words before the first session
+        System.out.println("-- " + WordDictionary.getSecretPoolSize() + " secret words out of " + WordDictionary.size());
+        HintEngine.start();
+        // Put back the games in progress when the server was stopped, and keep saving them
+        if (!SNAPSHOT_FILE.isEmpty()) restoreSessions(SNAPSHOT_FILE, SNAPSHOT_INTERVAL);
+        else if (DURABLE) System.err.println("-- Durable mode ignored: the write-ahead log needs a snapshot file");
+        // Expired sessions are removed in the background, not only when their cookie comes back
+        SESSIONS.startSweeper(SESSION_SWEEP_INTERVAL);
+        registerMetrics();
+
+        if (mode.equals("nio")) runSelector(maxThreads);
+        else {
+            Executor executor = createExecutor(mode, maxThreads);
+            EXECUTOR = executor;
+            Metrics.registerPool(executor);
+            runBlocking(executor);
+        }
+    }
+
+    /**
+     * Exposes the state of the session table and of the write-ahead log at /metrics.
+     */
+    private static void registerMetrics() {
+        Metrics.register("wordle_log_events_total", "counter", "Log events written", Log::getWrittenCount);
+        Metrics.register("wordle_log_dropped_total", "counter", "Log events dropped, the log buffer being full", Log::getDroppedCount);
+        Metrics.register("wordle_sessions_live", "gauge", "Sessions in the session table", SESSIONS::size);
+        Metrics.register("wordle_sessions_max", "gauge", "Capacity of the session table", SESSIONS::getMaxSessions);
+        Metrics.register("wordle_sessions_created_total", "counter", "Sessions created", SESSIONS::getCreatedCount);
+        Metrics.register("wordle_sessions_expired_total", "counter", "Sessions removed once expired", SESSIONS::getExpiredCount);
+        Metrics.register("wordle_sessions_evicted_total", "counter", "Sessions evicted from the full table", SESSIONS::getEvictedCount);
+        if (WAL != null) {
+            WriteAheadLog wal = WAL;
+            Metrics.register("wordle_wal_records_total", "counter", "Records appended to the write-ahead log", wal::getAppendedCount);
+            Metrics.register("wordle_wal_fsyncs_total", "counter", "Syncs of the write-ahead log to disk", wal::getSyncCount);
+        }
+    }
+
+    /**
+     * Creates the executor running the HttpHandlers of the blocking server.
+     * In "virtual" mode, maxThreads is no longer a pool size but the number of
+     * connections that may be handled concurrently. On JVMs without virtual threads,
+     * it falls back to the pool mode, bounded the same way.
+     *
+     * @param mode       the execution mode, "pool" or "virtual"
+     * @param maxThreads the pool size, or the concurrency limit in virtual mode
+     * @return the executor to hand the HttpHandlers to
+     */
+    public static Executor createExecutor(String mode, int maxThreads) {
+        if (mode.equals("virtual")) {
+            ExecutorService virtualThreads = newVirtualThreadExecutor();
+            if (virtualThreads != null) return new BoundedExecutor(virtualThreads, maxThreads);
+            System.err.println("-- Virtual threads are not available on this JVM, using a pool of " + maxThreads + " threads.");
+        }
+        return Executors.newFixedThreadPool(maxThreads);
+    }
+
+    /**
+     * Creates the table of the game sessions.
+     *
+     * @param type        "heap" or "offheap"
+     * @param maxSessions the maximum number of live sessions
+     * @return the session store
+     */
+    private static SessionStore createSessionStore(String type, int maxSessions) {
+        if (type.equals("offheap")) return new OffHeapSessionStore(maxSessions);
+        return new HeapSessionStore(maxSessions);
+    }
+
+    /**
+     * Reloads the session table from its snapshot file and write-ahead log, then snapshots it in the background.
+     *
+     * @param file           the snapshot file
+     * @param intervalMillis the time between two snapshots
+     */
+    private static void restoreSessions(String file, int intervalMillis) {
+        long start = System.nanoTime();
+        if (DURABLE) WAL = new WriteAheadLog(Paths.get(file + ".wal"), WAL_FLUSH_INTERVAL);
+        SessionSnapshot snapshot = new SessionSnapshot(Paths.get(file), SESSIONS, WAL);
+        int restored = snapshot.load();
+        System.out.println("-- Restored " + restored + " sessions from " + file + " in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+        snapshot.start(intervalMillis);
+    }
+
+    /**
+     * Runs the blocking server: each accepted socket is handed to the executor.
+     *
+     * @param executor the executor running the HttpHandlers
+     */
+    private static void runBlocking(Executor executor) {
+        try (ServerSocket serverSocket = openServerSocket(PORT, 0)) {
+            System.out.println("-- Wordle HTTP Server is listening on port " + PORT + ".");
+            serve(serverSocket, executor);
         } catch (IOException ioe1) {
             System.err.println("-- Could not bind to port " + PORT);
             ioe1.printStackTrace();
@@ -47,29 +166,147 @@ public class WordleServer {
         }
     }
 
+    /**
+     * Opens a server socket backed by a channel, so that the accepted sockets
+     * have a channel too and responses can be sent with gathering writes.
+     *
+     * @param port    the port to bind to, 0 for an ephemeral port
+     * @param backlog the maximum number of pending connections, 0 for the default
+     * @return the bound server socket
+     * @throws IOException if the socket cannot be bound
+     */
+    public static ServerSocket openServerSocket(int port, int backlog) throws IOException {
+        ServerSocket serverSocket = ServerSocketChannel.open().socket();
+        serverSocket.bind(new InetSocketAddress(port), backlog);
+        return serverSocket;
+    }
+
+    /**
+     * Accepts connections on the server socket until it is closed.
+     *
+     * @param serverSocket the bound server socket
+     * @param executor     the executor running the HttpHandlers
+     */
+    public static void serve(ServerSocket serverSocket, Executor executor) {
+        while (!serverSocket.isClosed()) {
+            // Accepting new connections
+            try {
+                Socket clientSocket = serverSocket.accept();
+                // Handle HTTP request in a separate thread
+                HttpHandler httpHandler = new HttpHandler(getServerID(), clientSocket);
+                executor.execute(httpHandler);
+            } catch (IOException ioe2) {
+                if (serverSocket.isClosed()) break;
+                System.err.println("-- Error accepting client connection.");
+                ioe2.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Returns an executor starting a new virtual thread per task.
+     * Virtual threads are looked up reflectively so that the server still compiles and runs
+     * on older JDKs.
+     *
+     * @return the virtual thread executor, or null if virtual threads are unavailable
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Runs the non-blocking server: a selector event loop holds the connections
+     * and only complete requests are handed to a pool of maxThreads workers.
+     *
+     * @param maxThreads the number of worker threads running the game logic
+     */
+    private static void runSelector(int maxThreads) {
+        try { new SelectorServer(PORT, maxThreads).run(); }
+        catch (IOException ioe) {
+            System.err.println("-- Could not bind to port " + PORT);
+            ioe.printStackTrace();
+            System.exit(1);
+        }
+    }
+
     // Getters
     public static int getServerID() { return SERVER_ID; }
     public static int getPort() { return PORT; }
     public static int getMaxChunckSize() { return MAX_CHUNCK_SIZE; }
     public static int getMaxAttempts() { return MAX_ATTEMPTS; }
+    public static int getMaxRequestSize() { return MAX_REQUEST_SIZE; }
+    public static int getKeepAliveTimeout() { return KEEP_ALIVE_TIMEOUT; }
+    public static int getRequestTimeout() { return REQUEST_TIMEOUT; }
+    public static int getReadTimeout() { return READ_TIMEOUT; }
+    public static int getMaxRequestLine() { return MAX_REQUEST_LINE; }
+    public static int getMaxHeaderSize() { return MAX_HEADER_SIZE; }
+    public static int getMaxHeaders() { return MAX_HEADERS; }
+    public static int getMaxKeepAliveRequests() { return MAX_KEEP_ALIVE_REQUESTS; }
+    public static int getCompressionThreshold() { return COMPRESSION_THRESHOLD; }
+    public static int getCompressionLevel() { return COMPRESSION_LEVEL; }
+    public static String getSnapshotFile() { return SNAPSHOT_FILE; }
+    public static int getSnapshotInterval() { return SNAPSHOT_INTERVAL; }
+    public static boolean isDurable() { return WAL != null; }
+    public static int getWalFlushInterval() { return WAL_FLUSH_INTERVAL; }
+    public static String getWordsFile() { return WORDS_FILE; }
+    public static String getSecretWordsFile() { return SECRET_WORDS_FILE; }
+    public static int getFeedbackCacheSize() { return FEEDBACK_CACHE_SIZE; }
+    public static int getHintBudget() { return HINT_BUDGET; }
+    public static String getLogLevel() { return LOG_LEVEL; }
+    public static String getLogFile() { return LOG_FILE; }
+    public static int getLogSample() { return LOG_SAMPLE; }
+    public static int getLogBufferSize() { return LOG_BUFFER_SIZE; }
+    public static SessionStore getSessionStore() { return SESSIONS; }
+
+    /**
+     * Tells whether accepted connections of the blocking server wait for a thread. The threads
+     * kept by idle keep-alive connections are then given up, so that a few more clients than
+     * threads do not wait for a keep-alive timeout.
+     *
+     * @return true if connections are queued in the executor
+     */
+    public static boolean hasWaitingConnections() {
+        Executor executor = EXECUTOR;
+        if (executor instanceof ThreadPoolExecutor) return !((ThreadPoolExecutor) executor).getQueue().isEmpty();
+        if (executor instanceof BoundedExecutor) return ((BoundedExecutor) executor).getQueueLength() > 0;
+        return false;
+    }
 
     // Methods to manage SESSIONS mapping
-    public static void addSession(String id, SessionData session) {
+    /**
+     * Adds a session to the table.
+     *
+     * @param id      the session ID
+     * @param session the new session
+     * @return the session as stored, the one to play on (the off-heap store copies the session given)
+     */
+    public static SessionData addSession(String id, SessionData session) {
         if (id == null || session == null)
             throw new IllegalArgumentException("Neither id nor session can be null");
 
-        SESSIONS.put(id, session);
+        return SESSIONS.put(id, session);
     }
     public static SessionData getSessionData(String id) { return SESSIONS.get(id); }
-    public static String getFullGameState(String id) { return SESSIONS.get(id).getFullGameState(); }
-    public static String getCurrGameState(String id, int currGS) { return SESSIONS.get(id).getCurrGameState(currGS); }
-    public static String getSecretWord(String id) { return SESSIONS.get(id).getSecretWord(); }
     public static void removeSession(String id) { SESSIONS.remove(id); }
-    public static void addGameState(String id, String guess, String color) { SESSIONS.get(id).addGameState(guess, color); }
-    public static boolean hasSession(String id) { return SESSIONS.containsKey(id); }
+    public static boolean hasSession(String id) { return SESSIONS.contains(id); }
+    public static void touchSession(String id) { SESSIONS.touch(id); }
+    /**
+     * In durable mode, logs the state of a session after a guess, and waits until it is on disk.
+     *
+     * @param id      the session ID
+     * @param session the session, as resolved by the request
+     */
+    public static void commitSession(String id, SessionData session) {
+        if (WAL == null || session == null) return;
+        UUID uuid = UUID.fromString(id);
+        WAL.await(WAL.append(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), session));
+    }
     public static void printSESSION(String id) {
-        System.out.println("SESSION INFO:");
-        System.out.println("  id: " + id);
-        System.out.println("  Secret Word:" + SESSIONS.get(id).getSecretWord());
+        SessionData session = SESSIONS.get(id);
+        if (session != null) Log.debug("Session " + id + ", secret word: " + session.getSecretWord());
     }
 }
@@ -0,0 +1,271 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The WriteAheadLog class makes the guesses durable: a guess is only answered once the new state
+ * of its session is on disk. Records have the format of the snapshot files (see SessionSnapshot).
+ *
+ * The log is group-committed: request threads append their records to a buffer in memory and wait,
+ * while a single flusher thread writes the buffer and syncs it to disk for all of them at once.
+ * After a sync, the flusher waits for the flush interval before the next one, so that the records
+ * of several requests share a single fsync.
+ *
+ * The log only holds the changes made since the last snapshot: each snapshot rotates the file
+ * before walking the table, and deletes the rotated file once it is on disk.
+ */
+public class WriteAheadLog {
+    private static final int INITIAL_BUFFER_RECORDS = 256;
+
+    private final Path file;
+    private final Path rotatedFile;
+    private final long flushIntervalNanos;
+
+    // Records appended but not written yet, and the number of the last one; guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Condition synced = lock.newCondition();
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_RECORDS * SessionSnapshot.RECORD_SIZE);
+    private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER_RECORDS * SessionSnapshot.RECORD_SIZE);
+    private long appendedCount = 0;
+    private long syncedCount = 0;
+    private long syncs = 0;
+    private boolean closed = false;
+    private boolean flusherDone = true;
+
+    // The file is written by the flusher and rotated by the snapshots; guarded by ioLock
+    private final ReentrantLock ioLock = new ReentrantLock();
+    private FileChannel channel;
+
+    /**
+     * Creates the log of a snapshot. The log is not open until {@link #replay} is called.
+     *
+     * @param file               the log file
+     * @param flushIntervalMillis the time between two syncs of the log, 0 to sync as soon as the previous one is done
+     */
+    public WriteAheadLog(Path file, long flushIntervalMillis) {
+        this.file = file;
+        this.rotatedFile = file.resolveSibling(file.getFileName() + ".1");
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+    }
+
+    // Getters
+    public long getAppendedCount() {
+        lock.lock();
+        try { return appendedCount; }
+        finally { lock.unlock(); }
+    }
+    public long getSyncCount() {
+        lock.lock();
+        try { return syncs; }
+        finally { lock.unlock(); }
+    }
+
+    /**
+     * Replays the log over the sessions restored from the snapshot, the rotated file first:
+     * a record older than its session in the table is skipped. An unreadable file is moved aside.
+     * Then opens the log for appending, without its torn last record if any, and starts the flusher.
+     *
+     * @param store the session table
+     * @return the number of records restored
+     * @throws IOException if the log cannot be opened
+     */
+    public int replay(SessionStore store) throws IOException {
+        int restored = 0;
+        for (Path log : new Path[] { rotatedFile, file }) {
+            try {
+                restored += SessionSnapshot.replay(log, store, true);
+            }
+            catch (IOException | RuntimeException e) {
+                System.err.println("Cannot replay the write-ahead log " + log + ": " + e.getMessage());
+                Files.move(log, log.resolveSibling(log.getFileName() + ".bad"), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        ioLock.lock();
+        try {
+            channel = open(file);
+        }
+        finally { ioLock.unlock(); }
+
+        lock.lock();
+        try { flusherDone = false; }
+        finally { lock.unlock(); }
+        Thread flusher = new Thread(this::flushLoop, "wal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        return restored;
+    }
+
+    /**
+     * Appends the state of a session to the log. The record is not durable before {@link #await} returns.
+     *
+     * @param msb     the most significant bits of the session UUID
+     * @param lsb     the least significant bits of the session UUID
+     * @param session the session, once changed
+     * @return the number of the record, to wait for, 0 once the log is closed
+     */
+    public long append(long msb, long lsb, SessionData session) {
+        lock.lock();
+        try {
+            if (closed) return 0;
+            if (pending.remaining() < SessionSnapshot.RECORD_SIZE) {
+                ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2);
+                pending.flip();
+                larger.put(pending);
+                pending = larger;
+            }
+            SessionSnapshot.writeRecord(pending, msb, lsb, session);
+            if (appendedCount++ == syncedCount) appended.signal(); // Wake the flusher up
+            return appendedCount;
+        }
+        finally { lock.unlock(); }
+    }
+
+    /**
+     * Waits until a record is synced to disk. Returns early if the log is closed or was never opened.
+     *
+     * @param record the number of the record, as returned by append()
+     */
+    public void await(long record) {
+        lock.lock();
+        try {
+            while (syncedCount < record && !closed && !flusherDone) synced.awaitUninterruptibly();
+        }
+        finally { lock.unlock(); }
+    }
+
+    /**
+     * Starts a new log file. The records of the current one, kept aside as the rotated file, are
+     * replayed at startup until the snapshot being taken is on disk and calls {@link #deleteRotated}.
+     * Nothing happens while the file of a previous rotation is still there (its snapshot failed):
+     * the current file then holds every record since.
+     *
+     * @throws IOException if the new file cannot be created
+     */
+    public void rotate() throws IOException {
+        ioLock.lock();
+        try {
+            if (channel == null || Files.exists(rotatedFile)) return;
+            channel.close();
+            Files.move(file, rotatedFile, StandardCopyOption.ATOMIC_MOVE);
+            channel = open(file);
+        }
+        finally { ioLock.unlock(); }
+    }
+
+    /**
+     * Deletes the rotated file, once the snapshot holding its records is on disk.
+     *
+     * @throws IOException if the file cannot be deleted
+     */
+    public void deleteRotated() throws IOException {
+        ioLock.lock();
+        try { Files.deleteIfExists(rotatedFile); }
+        finally { ioLock.unlock(); }
+    }
+
+    /**
+     * Closes the log, once the flusher has synced the records appended so far.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            appended.signal();
+            while (!flusherDone) synced.awaitUninterruptibly();
+        }
+        finally { lock.unlock(); }
+
+        ioLock.lock();
+        try {
+            if (channel != null) channel.close();
+        }
+        catch (IOException e) { e.printStackTrace(); }
+        finally { ioLock.unlock(); }
+    }
+
+
+    // HELPERS METHODS ------------------------------------------------------------
+    /**
+     * The flusher: waits for records, lets more arrive until the flush interval has elapsed
+     * since the previous sync, then writes and syncs them all with one fsync.
+     * Once the log is closed, it syncs what is left without waiting, and stops.
+     */
+    private void flushLoop() {
+        long lastSync = System.nanoTime() - flushIntervalNanos;
+        while (true) {
+            ByteBuffer batch;
+            long batchEnd;
+            lock.lock();
+            try {
+                while (appendedCount == syncedCount && !closed) appended.awaitUninterruptibly();
+                if (appendedCount == syncedCount) {
+                    flusherDone = true;
+                    synced.signalAll();
+                    return;
+                }
+                long wait;
+                while ((wait = lastSync + flushIntervalNanos - System.nanoTime()) > 0 && !closed) {
+                    try { appended.awaitNanos(wait); }
+                    catch (InterruptedException e) { break; }
+                }
+
+                // Swap the buffers: requests append to the other one while this one is written
+                batch = pending;
+                batchEnd = appendedCount;
+                pending = spare;
+                pending.clear();
+                batch.flip();
+            }
+            finally { lock.unlock(); }
+
+            lastSync = System.nanoTime();
+            ioLock.lock();
+            try {
+                write(batch);
+            }
+            catch (IOException e) {
+                // The requests are answered anyway: the snapshots still save their sessions
+                System.err.println("Cannot write the write-ahead log " + file + ": " + e.getMessage());
+            }
+            finally { ioLock.unlock(); }
+
+            lock.lock();
+            try {
+                spare = batch;
+                syncedCount = batchEnd;
+                syncs++;
+                synced.signalAll();
+            }
+            finally { lock.unlock(); }
+        }
+    }
+
+    /**
+     * Writes records at the end of the log and syncs them to disk.
+     */
+    private void write(ByteBuffer records) throws IOException {
+        while (records.hasRemaining()) channel.write(records);
+        channel.force(false);
+    }
+
+    /**
+     * Opens a log file for appending, with a header if it is new.
+     */
+    private static FileChannel open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        long size = SessionSnapshot.validSize(channel.size());
+        channel.truncate(size); // A torn record would shift all the following ones
+        channel.position(size);
+        if (size == 0) SessionSnapshot.writeHeader(channel);
+        return channel;
+    }
+}